@@ -28,6 +28,8 @@
 -keep interface top.jessi.kv.storage.Converter { *; }
 -keep interface top.jessi.kv.storage.LogInterceptor { *; }
 -keep interface top.jessi.kv.storage.KvFacade { *; }
+-keep interface top.jessi.kv.storage.KvCallback { *; }
+-keep interface top.jessi.kv.storage.DecodeFailureListener { *; }
 
 # ==================== 接口实现类 — 通过反射或泛型使用 ====================
 
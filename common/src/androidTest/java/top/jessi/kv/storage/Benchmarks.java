@@ -0,0 +1,45 @@
+package top.jessi.kv.storage;
+
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * 基准测试的计时工具，结果以 {@link #TAG} 标签输出到 logcat：
+ *
+ * <pre>
+ * ./gradlew :common:connectedAndroidTest
+ * adb logcat -s KvBenchmark
+ * </pre>
+ */
+final class Benchmarks {
+
+    static final String TAG = "KvBenchmark";
+
+    private Benchmarks() {
+    }
+
+    interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * 先预热，再重复执行 iterations 次。
+     *
+     * @return 平均每次的耗时（纳秒）
+     */
+    static double nanosPerOp(int warmup, int iterations, Task task) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        return (double) (System.nanoTime() - start) / iterations;
+    }
+
+    static void report(String format, Object... args) {
+        Log.i(TAG, String.format(Locale.US, format, args));
+    }
+}
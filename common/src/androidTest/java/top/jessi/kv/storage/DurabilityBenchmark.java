@@ -0,0 +1,147 @@
+package top.jessi.kv.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 测量各内置存储在每种 {@link Durability} 下的写入延迟和吞吐量。
+ *
+ * <p>延迟由单线程逐条写入得出；吞吐量由 {@link #THREADS} 个线程同时写入得出，
+ * {@link Durability#GROUP_COMMIT} 只有在并发写入时才能合并提交。存储经 {@link KvBuilder} 创建，
+ * 与实际使用时应用持久化方式的路径一致。</p>
+ */
+@RunWith(AndroidJUnit4.class)
+public class DurabilityBenchmark {
+
+    private static final int WRITES = 400;
+    private static final int THREADS = 4;
+    private static final int SQLITE_VERSION = 2;
+    private static final String VALUE = "value-0123456789-0123456789-0123456789-0123456789-0123456789";
+
+    private Context context;
+    private File directory;
+
+    interface StorageFactory {
+        Storage create(String name);
+    }
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        directory = new File(context.getCacheDir(), "kv_durability_benchmark");
+        assertTrue(directory.isDirectory() || directory.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void sharedPreferences() throws Exception {
+        measure("SharedPreferencesStorage", name -> new SharedPreferencesStorage(context, "kv_benchmark_" + name));
+    }
+
+    @Test
+    public void sqlite() throws Exception {
+        measure("SQLiteStorage", name -> new SQLiteStorage(context, "kv_benchmark_" + name, null, SQLITE_VERSION));
+    }
+
+    @Test
+    public void file() throws Exception {
+        measure("FileStorage", name -> new FileStorage(path(name)));
+    }
+
+    @Test
+    public void logFile() throws Exception {
+        measure("LogFileStorage", name -> new LogFileStorage(path(name)));
+    }
+
+    @Test
+    public void mappedFile() throws Exception {
+        measure("MappedFileStorage", name -> new MappedFileStorage(path(name)));
+    }
+
+    private String path(String name) {
+        return new File(directory, name).getPath();
+    }
+
+    private void measure(String backend, StorageFactory factory) throws Exception {
+        for (Durability durability : Durability.values()) {
+            Storage storage = new KvBuilder(context)
+                    .setStorage(factory.create(durability.name()))
+                    .setDurability(durability)
+                    .getStorage();
+            storage.deleteAll();
+
+            long[] latencies = new long[WRITES];
+            for (int i = 0; i < WRITES; i++) {
+                long start = System.nanoTime();
+                assertTrue(storage.put("latency" + i, VALUE));
+                latencies[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(latencies);
+            double mean = 0;
+            for (long latency : latencies) {
+                mean += latency;
+            }
+            mean /= WRITES;
+
+            double throughput = concurrentWrites(storage);
+            assertEquals(VALUE, storage.get("latency0"));
+            assertEquals(VALUE, storage.get("thread0-0"));
+            Benchmarks.report("%s %s: latency mean %.3f ms, p50 %.3f ms, p99 %.3f ms; %d threads %.0f writes/s",
+                    backend, durability, mean / 1e6, latencies[WRITES / 2] / 1e6, latencies[WRITES * 99 / 100] / 1e6,
+                    THREADS, throughput);
+            storage.deleteAll();
+        }
+    }
+
+    /**
+     * @return 每秒完成的写入次数
+     */
+    private double concurrentWrites(Storage storage) throws InterruptedException {
+        AtomicBoolean failed = new AtomicBoolean();
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            String prefix = "thread" + t + "-";
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < WRITES / THREADS; i++) {
+                    if (!storage.put(prefix + i, VALUE)) {
+                        failed.set(true);
+                    }
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(!failed.get());
+        return WRITES * 1e9 / elapsed;
+    }
+}
@@ -0,0 +1,69 @@
+package top.jessi.kv.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 对比 {@link AesGcmEncryption} 与 {@link ConcealEncryption} 在小值（32 B）和大值（64 KB）上的加解密吞吐量。
+ * 两者都经过 KV 实际使用的文本接口，AES-GCM 另外测量存储支持 byte[] 时使用的字节接口。
+ */
+@RunWith(AndroidJUnit4.class)
+public class EncryptionBenchmark {
+
+    private static final String KEY = "benchmark";
+
+    private final Encryption aesGcm = new AesGcmEncryption("benchmark secret");
+    private final Encryption conceal = new ConcealEncryption();
+
+    @Test
+    public void smallValues() throws Exception {
+        compare(32, 20_000);
+    }
+
+    @Test
+    public void largeValues() throws Exception {
+        compare(64 * 1024, 200);
+    }
+
+    private void compare(int size, int iterations) throws Exception {
+        assertTrue(aesGcm.init());
+        assertTrue(conceal.init());
+        char[] chars = new char[size];
+        Arrays.fill(chars, 'v');
+        String text = new String(chars);
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+
+        measureText("ConcealEncryption", conceal, text, iterations);
+        measureText("AesGcmEncryption", aesGcm, text, iterations);
+
+        byte[] cipher = aesGcm.encryptBytes(KEY, bytes);
+        assertArrayEquals(bytes, aesGcm.decryptBytes(KEY, cipher));
+        double encrypt = Benchmarks.nanosPerOp(iterations / 4, iterations, () -> aesGcm.encryptBytes(KEY, bytes));
+        double decrypt = Benchmarks.nanosPerOp(iterations / 4, iterations, () -> aesGcm.decryptBytes(KEY, cipher));
+        report("AesGcmEncryption bytes", size, encrypt, decrypt);
+    }
+
+    private void measureText(String name, Encryption encryption, String text, int iterations) throws Exception {
+        String cipher = encryption.encrypt(KEY, text);
+        assertEquals(text, encryption.decrypt(KEY, cipher));
+        double encrypt = Benchmarks.nanosPerOp(iterations / 4, iterations, () -> encryption.encrypt(KEY, text));
+        double decrypt = Benchmarks.nanosPerOp(iterations / 4, iterations, () -> encryption.decrypt(KEY, cipher));
+        report(name, text.length(), encrypt, decrypt);
+    }
+
+    private static void report(String name, int size, double encryptNanos, double decryptNanos) {
+        Benchmarks.report("%s %d B: encrypt %.0f ops/s (%.1f MB/s), decrypt %.0f ops/s (%.1f MB/s)",
+                name, size, 1e9 / encryptNanos, size * 1e3 / encryptNanos,
+                1e9 / decryptNanos, size * 1e3 / decryptNanos);
+    }
+}
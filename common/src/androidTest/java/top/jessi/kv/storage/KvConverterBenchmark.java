@@ -0,0 +1,103 @@
+package top.jessi.kv.storage;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 对比集合的两种解码方式：先解析成无类型结构、再逐个元素序列化后重新解析（改动前），
+ * 与按参数化类型一次解析（{@link KvConverter} 当前的实现）。
+ */
+@RunWith(AndroidJUnit4.class)
+public class KvConverterBenchmark {
+
+    private final Parser parser = new GsonParser(new Gson());
+    private final KvConverter converter = new KvConverter(parser);
+
+    @Test
+    public void decodeList1k() throws Exception {
+        compare(1_000, 100);
+    }
+
+    @Test
+    public void decodeList10k() throws Exception {
+        compare(10_000, 20);
+    }
+
+    private void compare(int size, int iterations) throws Exception {
+        List<Pojo> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(new Pojo(i));
+        }
+        String json = converter.toString(list);
+        DataInfo info = new DataInfo(DataInfo.TYPE_LIST, null, Pojo.class, null);
+
+        List<Pojo> decoded = converter.fromString(json, info);
+        List<Pojo> legacy = twoPassList(json, Pojo.class);
+        assertEquals(size, decoded.size());
+        assertEquals(size, legacy.size());
+        for (int i = 0; i < size; i++) {
+            assertEquals(list.get(i), decoded.get(i));
+            assertEquals(list.get(i), legacy.get(i));
+        }
+
+        double twoPass = Benchmarks.nanosPerOp(iterations / 4, iterations, () -> twoPassList(json, Pojo.class));
+        double singlePass = Benchmarks.nanosPerOp(iterations / 4, iterations, () -> converter.fromString(json, info));
+        Benchmarks.report("List<Pojo> x %d decode: two-pass %.2f ms, single-pass %.2f ms (%.1fx)",
+                size, twoPass / 1e6, singlePass / 1e6, twoPass / singlePass);
+    }
+
+    /**
+     * 改动前 KvConverter.toList 的解码方式，元素先被解析为 LinkedTreeMap。
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> twoPassList(String json, Class<T> type) throws Exception {
+        List<Object> list = parser.fromJson(json, new TypeToken<List<Object>>() {
+        }.getType());
+        int size = list.size();
+        for (int i = 0; i < size; i++) {
+            list.set(i, parser.fromJson(parser.toJson(list.get(i)), type));
+        }
+        return (List<T>) list;
+    }
+
+    public static class Pojo {
+        String name;
+        int age;
+        double score;
+        List<String> tags;
+
+        public Pojo() {
+        }
+
+        Pojo(int i) {
+            name = "user" + i;
+            age = i % 100;
+            score = i * 1.5;
+            tags = Arrays.asList("tag" + (i % 7), "tag" + (i % 11));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Pojo pojo)) {
+                return false;
+            }
+            return age == pojo.age && score == pojo.score && name.equals(pojo.name) && tags.equals(pojo.tags);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package top.jessi.kv.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 测量 {@link SQLiteStorage} 在多个读线程下的读取吞吐量，以及另有一个线程持续提交写事务时的读取吞吐量。
+ * 读取不开启事务且数据库处于 WAL 模式，读线程之间、读与写之间都不应互相阻塞。
+ */
+@RunWith(AndroidJUnit4.class)
+public class SQLiteReadBenchmark {
+
+    private static final String DATABASE = "kv_read_benchmark";
+    private static final int SQLITE_VERSION = 2;
+    private static final int KEYS = 10_000;
+    private static final int READS_PER_THREAD = 20_000;
+    private static final int WRITE_BATCH = 100;
+
+    private Context context;
+    private SQLiteStorage storage;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        storage = new SQLiteStorage(context, DATABASE, null, SQLITE_VERSION);
+        storage.deleteAll();
+        Map<String, String> entries = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            entries.put(key(i), value(i));
+        }
+        assertTrue(storage.putAll(entries));
+    }
+
+    @After
+    public void tearDown() {
+        storage.close();
+        context.deleteDatabase(DATABASE);
+    }
+
+    @Test
+    public void concurrentReads() throws Exception {
+        for (int threads : new int[]{1, 2, 4, 8}) {
+            double reads = readThroughput(threads, false);
+            Benchmarks.report("SQLiteStorage %d reader(s): %.0f reads/s", threads, reads);
+        }
+    }
+
+    @Test
+    public void readsDuringWrites() throws Exception {
+        for (int threads : new int[]{1, 4}) {
+            double reads = readThroughput(threads, true);
+            Benchmarks.report("SQLiteStorage %d reader(s) + 1 writer: %.0f reads/s", threads, reads);
+        }
+    }
+
+    /**
+     * @param withWriter 是否同时运行一个持续批量写入的线程
+     * @return 所有读线程合计每秒完成的读取次数
+     */
+    private double readThroughput(int threads, boolean withWriter) throws InterruptedException {
+        AtomicBoolean failed = new AtomicBoolean();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = null;
+        if (withWriter) {
+            writer = new Thread(() -> {
+                Map<String, String> batch = new HashMap<>();
+                int round = 0;
+                while (running.get()) {
+                    batch.clear();
+                    for (int i = 0; i < WRITE_BATCH; i++) {
+                        batch.put("write" + round + "-" + i, "v");
+                    }
+                    if (!storage.putAll(batch)) {
+                        failed.set(true);
+                    }
+                    round++;
+                }
+            });
+            writer.start();
+        }
+
+        Thread[] readers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(t);
+            readers[t] = new Thread(() -> {
+                for (int i = 0; i < READS_PER_THREAD; i++) {
+                    int index = random.nextInt(KEYS);
+                    if (!value(index).equals(storage.get(key(index)))) {
+                        failed.set(true);
+                    }
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        running.set(false);
+        if (writer != null) {
+            writer.join();
+        }
+        assertEquals(false, failed.get());
+        return (double) threads * READS_PER_THREAD * 1e9 / elapsed;
+    }
+
+    private static String key(int index) {
+        return "key" + index;
+    }
+
+    private static String value(int index) {
+        return "value-" + index;
+    }
+}
@@ -0,0 +1,122 @@
+package top.jessi.kv.storage;
+
+import android.util.Base64;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 使用 AES-GCM 进行加密。
+ *
+ * <p>密钥只在构造时生成一次，每个线程复用自己的 {@link Cipher} 实例，加解密时不会重新创建密钥材料。
+ * 每次加密使用随机 IV，密文格式为 Base64(IV + 密文 + 认证标签)，解密时会校验数据是否被篡改。</p>
+ *
+ * <pre>
+ * KV.init(context).setEncryption(new AesGcmEncryption("my secret")).build();
+ * </pre>
+ *
+ * <p>注意：与 {@link ConcealEncryption} 的密文格式不兼容，已有数据的应用切换前需自行迁移。</p>
+ */
+public class AesGcmEncryption implements Encryption {
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private final SecretKey secretKey;
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<Cipher> cipherHolder = new ThreadLocal<>();
+
+    /**
+     * @param secretKey AES 密钥，长度为 128、192 或 256 位
+     */
+    public AesGcmEncryption(SecretKey secretKey) {
+        KvUtils.checkNull("Secret key", secretKey);
+        this.secretKey = secretKey;
+    }
+
+    /**
+     * 以字符串的 SHA-256 摘要作为 256 位 AES 密钥。
+     *
+     * @param secret 密钥字符串
+     */
+    public AesGcmEncryption(String secret) {
+        this(deriveKey(secret));
+    }
+
+    private static SecretKey deriveKey(String secret) {
+        KvUtils.checkNullOrEmpty("Secret", secret);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+            return new SecretKeySpec(digest, "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    @Override
+    public boolean init() {
+        try {
+            cipher();
+            return true;
+        } catch (GeneralSecurityException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public String encrypt(String key, String value) throws Exception {
+        return Base64.encodeToString(encryptBytes(key, value.getBytes(StandardCharsets.UTF_8)), Base64.NO_WRAP);
+    }
+
+    @Override
+    public String decrypt(String key, String value) throws Exception {
+        return new String(decryptBytes(key, Base64.decode(value, Base64.NO_WRAP)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 直接输出 IV + 密文 + 认证标签，不做 Base64 编码。
+     */
+    @Override
+    public byte[] encryptBytes(String key, byte[] plain) throws Exception {
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+
+        Cipher cipher = cipher();
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+        byte[] output = new byte[IV_LENGTH + cipher.getOutputSize(plain.length)];
+        System.arraycopy(iv, 0, output, 0, IV_LENGTH);
+        int length = cipher.doFinal(plain, 0, plain.length, output, IV_LENGTH);
+        return IV_LENGTH + length == output.length ? output : Arrays.copyOf(output, IV_LENGTH + length);
+    }
+
+    @Override
+    public byte[] decryptBytes(String key, byte[] input) throws Exception {
+        if (input.length < IV_LENGTH) {
+            throw new IllegalArgumentException("Cipher text is too short");
+        }
+
+        Cipher cipher = cipher();
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(TAG_LENGTH_BITS, input, 0, IV_LENGTH));
+        return cipher.doFinal(input, IV_LENGTH, input.length - IV_LENGTH);
+    }
+
+    private Cipher cipher() throws GeneralSecurityException {
+        Cipher cipher = cipherHolder.get();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(TRANSFORMATION);
+            cipherHolder.set(cipher);
+        }
+        return cipher;
+    }
+
+}
@@ -0,0 +1,65 @@
+package top.jessi.kv.storage;
+
+/**
+ * 解码缓存的统计快照。
+ */
+public final class CacheStats {
+
+    /** 未启用缓存时返回的空统计 */
+    static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0);
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final int size;
+    private final long bytes;
+
+    CacheStats(long hitCount, long missCount, long evictionCount, int size, long bytes) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return 命中次数
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return 未命中次数
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return 因超出容量被淘汰的条目数
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return 当前缓存的条目数
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return 当前缓存的估算字节数
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hit=" + hitCount + ", miss=" + missCount + ", eviction=" + evictionCount
+                + ", size=" + size + ", bytes=" + bytes + "}";
+    }
+}
@@ -0,0 +1,36 @@
+package top.jessi.kv.storage;
+
+/**
+ * 值压缩中间层，在转换之后、加密之前压缩较大的值。
+ *
+ * <p>编号会写入值的头部，读取时据此选择解压实现，因此同一编号必须始终对应同一种压缩格式。
+ * 实现类应当是线程安全的。</p>
+ *
+ * @see DeflateCodec
+ * @see KvBuilder#setCompression(Codec)
+ */
+public interface Codec {
+
+    /**
+     * 获取压缩格式编号，必须大于 0，{@link DeflateCodec#ID} 已被内置实现占用。
+     *
+     * @return 压缩格式编号
+     */
+    int getId();
+
+    /**
+     * 压缩数据。
+     *
+     * @param data 原始数据
+     * @return 压缩后的数据
+     */
+    byte[] compress(byte[] data) throws Exception;
+
+    /**
+     * 解压数据。
+     *
+     * @param data 压缩后的数据
+     * @return 原始数据
+     */
+    byte[] decompress(byte[] data) throws Exception;
+}
@@ -13,16 +13,69 @@ final class DataInfo {
     static final char TYPE_MAP = '2';
     /** Set 类型 */
     static final char TYPE_SET = '3';
+    /** 以下为直接编码、不经过 Gson 的基本类型 */
+    static final char TYPE_STRING = 'S';
+    static final char TYPE_INTEGER = 'I';
+    static final char TYPE_LONG = 'J';
+    static final char TYPE_BOOLEAN = 'Z';
+    static final char TYPE_DOUBLE = 'D';
 
     final char dataType;
     final String cipherText;
     final Class<?> keyClazz;
     final Class<?> valueClazz;
+    /** 写入时使用的加密方案编号，见 {@link EncryptionPolicy} */
+    final int encryptionScheme;
+    /** 写入时使用的压缩格式编号，0 表示未压缩，见 {@link Codec} */
+    final int codecId;
 
     DataInfo(char dataType, String cipherText, Class<?> keyClazz, Class<?> valueClazz) {
+        this(dataType, cipherText, keyClazz, valueClazz, EncryptionPolicy.DEFAULT_SCHEME, 0);
+    }
+
+    DataInfo(char dataType, String cipherText, Class<?> keyClazz, Class<?> valueClazz,
+             int encryptionScheme, int codecId) {
         this.cipherText = cipherText;
         this.keyClazz = keyClazz;
         this.valueClazz = valueClazz;
         this.dataType = dataType;
+        this.encryptionScheme = encryptionScheme;
+        this.codecId = codecId;
+    }
+
+    /**
+     * 获取可直接编码的基本类型标记。
+     *
+     * @param value 原始值
+     * @return String、Integer、Long、Boolean、Double 返回对应的类型标记，其它类型返回 0
+     */
+    static char primitiveType(Object value) {
+        if (value instanceof String) return TYPE_STRING;
+        if (value instanceof Integer) return TYPE_INTEGER;
+        if (value instanceof Long) return TYPE_LONG;
+        if (value instanceof Boolean) return TYPE_BOOLEAN;
+        if (value instanceof Double) return TYPE_DOUBLE;
+        return 0;
+    }
+
+    /**
+     * 获取基本类型标记对应的类，无需反射。
+     *
+     * @param type 类型标记
+     * @return 对应的包装类，非基本类型标记返回 null
+     */
+    static Class<?> primitiveClass(char type) {
+        return switch (type) {
+            case TYPE_STRING -> String.class;
+            case TYPE_INTEGER -> Integer.class;
+            case TYPE_LONG -> Long.class;
+            case TYPE_BOOLEAN -> Boolean.class;
+            case TYPE_DOUBLE -> Double.class;
+            default -> null;
+        };
+    }
+
+    static boolean isPrimitive(char type) {
+        return primitiveClass(type) != null;
     }
 }
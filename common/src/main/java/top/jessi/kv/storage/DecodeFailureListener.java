@@ -0,0 +1,18 @@
+package top.jessi.kv.storage;
+
+/**
+ * 解码失败监听器，在某个键的数据无法反序列化、解密或转换时触发。
+ *
+ * <p>发生失败的键会返回 null（单条获取）或不出现在结果中（批量获取），
+ * 可通过此监听器记录或清理损坏的数据。</p>
+ */
+public interface DecodeFailureListener {
+
+    /**
+     * 某个键解码失败时触发，在调用 get 或 getAll 的线程中回调。
+     *
+     * @param key   解码失败的键
+     * @param cause 失败原因
+     */
+    void onDecodeFailure(String key, Exception cause);
+}
@@ -1,7 +1,23 @@
 package top.jessi.kv.storage;
 
+import android.util.Base64;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * KvFacade 的默认实现，负责协调加密、序列化、存储等组件完成数据的存取。
@@ -10,23 +26,68 @@ public class DefaultKvFacade implements KvFacade {
 
     private final Storage storage;
     private final Converter converter;
-    private final Encryption encryption;
+    /** 按方案编号索引的加密实现，下标 0 为默认加密 */
+    private final Encryption[] encryptionSchemes;
+    private final EncryptionPolicy encryptionPolicy;
+    /** 写入时使用的压缩实现，未启用压缩时为 null */
+    private final Codec codec;
+    private final int compressionThreshold;
+    /** 内置压缩实现，始终可用于读取 Deflate 格式的数据 */
+    private final DeflateCodec defaultCodec = new DeflateCodec();
     private final Serializer serializer;
     private final LogInterceptor logInterceptor;
+    private final KvCache cache;
+    private final KeyedExecutor asyncExecutor;
+    private final int parallelDecodeThreshold;
+    private final DecodeFailureListener decodeFailureListener;
+    private final TypeTable typeTable;
+    private final StreamStore streamStore;
+    /** 存储不支持前缀查询时使用的内存有序键索引，否则为 null */
+    private final KeyIndex keyIndex;
+    /** 存储支持 byte[] 值且使用内置序列化格式时，值以字节写入 */
+    private final boolean binaryValues;
+    private ForkJoinPool decodePool;
 
     public DefaultKvFacade(KvBuilder builder) {
-        encryption = builder.getEncryption();
+        serializer = builder.getSerializer();
+        encryptionPolicy = builder.getEncryptionPolicy();
+        // 自定义序列化格式无法记录方案编号，按键选择的方案在读取时将无从得知
+        if (encryptionPolicy != null && !(serializer instanceof KvSerializer)) {
+            throw new IllegalStateException("Encryption policy requires KvSerializer, "
+                    + serializer.getClass().getName() + " cannot record the encryption scheme");
+        }
+        encryptionSchemes = builder.getEncryptionSchemes();
+        // 自定义序列化格式无法记录压缩格式编号，此时不压缩，避免写入随值的大小而失败
+        codec = serializer instanceof KvSerializer ? builder.getCodec() : null;
+        compressionThreshold = builder.getCompressionThreshold();
         storage = builder.getStorage();
         converter = builder.getConverter();
-        serializer = builder.getSerializer();
         logInterceptor = builder.getLogInterceptor();
-        logInterceptor.onLog("KV.init -> Encryption : " + encryption.getClass().getSimpleName());
+        cache = builder.getCache();
+        asyncExecutor = new KeyedExecutor(builder.getExecutor());
+        parallelDecodeThreshold = builder.getParallelDecodeThreshold();
+        decodeFailureListener = builder.getDecodeFailureListener();
+        typeTable = builder.getTypeTable();
+        keyIndex = storage.supportsPrefixQuery() ? null : new KeyIndex(storage);
+        binaryValues = storage.supportsBytes() && serializer instanceof KvSerializer;
+        streamStore = new StreamStore(builder.getStreamDirectory(), encryptionSchemes, logInterceptor);
+        logInterceptor.onLog("KV.init -> Encryption : " + encryptionSchemes[0].getClass().getSimpleName());
+        if (codec == null && builder.getCodec() != null) {
+            logInterceptor.onLog("KV.init -> 自定义序列化实现无法记录压缩格式，已禁用压缩");
+        }
+        for (int i = 1; i < encryptionSchemes.length; i++) {
+            if (encryptionSchemes[i] != null) {
+                logInterceptor.onLog("KV.init -> Encryption scheme " + i + " : "
+                        + encryptionSchemes[i].getClass().getSimpleName());
+            }
+        }
     }
 
     @Override
     public <T> boolean put(String key, T value) {
         // 参数校验
         KvUtils.checkNull("Key", key);
+        TypeTable.checkNotReserved(key);
         log("KV.put -> key: " + key + ", value: " + value);
 
         // 如果值为 null，则删除该 key 对应的已有数据
@@ -35,43 +96,103 @@ public class DefaultKvFacade implements KvFacade {
             return delete(key);
         }
 
-        // 1. 转换为文本
-        String plainText = converter.toString(value);
-        log("KV.put -> 转换为文本: " + plainText);
-        if (plainText == null) {
-            log("KV.put -> 转换失败");
+        // 1~3. 转换、加密、序列化
+        Object serialized = encode(key, value);
+        if (serialized == null) {
             return false;
         }
 
-        // 2. 加密文本
-        String cipherText = null;
-        try {
-            cipherText = encryption.encrypt(key, plainText);
-            log("KV.put -> 加密为: " + cipherText);
-        } catch (Exception e) {
-            e.printStackTrace();
+        // 4. 保存到存储
+        boolean stored = storage.put(key, serialized);
+        invalidate(key);
+        if (keyIndex != null) {
+            keyIndex.onPut(key, stored);
         }
-        if (cipherText == null) {
-            log("KV.put -> 加密失败");
+        if (stored) {
+            log("KV.put -> 存储成功");
+            return true;
+        } else {
+            log("KV.put -> 存储操作失败");
             return false;
         }
+    }
 
-        // 3. 将密文与原始对象一起序列化
-        String serializedText = serializer.serialize(cipherText, value);
-        log("KV.put -> 序列化为: " + serializedText);
-        if (serializedText == null) {
-            log("KV.put -> 序列化失败");
-            return false;
+    @Override
+    public boolean putAll(Map<String, ?> entries) {
+        KvUtils.checkNull("Entries", entries);
+        log("KV.putAll -> size: " + entries.size());
+
+        // 先全部编码，任一失败则不写入任何数据
+        Map<String, Object> serializedMap = new HashMap<>();
+        List<String> nullKeys = new ArrayList<>();
+        for (Map.Entry<String, ?> entry : entries.entrySet()) {
+            String key = entry.getKey();
+            KvUtils.checkNull("Key", key);
+            TypeTable.checkNotReserved(key);
+            if (entry.getValue() == null) {
+                nullKeys.add(key);
+                continue;
+            }
+            Object serialized = encode(key, entry.getValue());
+            if (serialized == null) {
+                log("KV.putAll -> 编码失败, key: " + key);
+                return false;
+            }
+            serializedMap.put(key, serialized);
         }
 
-        // 4. 保存到存储
-        if (storage.put(key, serializedText)) {
-            log("KV.put -> 存储成功");
-            return true;
+        // 值为 null 的键与写入在同一次存储提交中删除
+        boolean stored;
+        if (nullKeys.isEmpty()) {
+            stored = serializedMap.isEmpty() || storage.putAll(serializedMap);
         } else {
-            log("KV.put -> 存储操作失败");
-            return false;
+            stored = storage.writeBatch(serializedMap, nullKeys);
+        }
+        invalidate(entries.keySet());
+        if (keyIndex != null) {
+            keyIndex.onPutAll(serializedMap.keySet(), stored);
+            keyIndex.onDelete(nullKeys, stored);
+        }
+        log(stored ? "KV.putAll -> 存储成功" : "KV.putAll -> 存储操作失败");
+        return stored;
+    }
+
+    @Override
+    public KvTransaction edit() {
+        return new KvTransaction(this);
+    }
+
+    /**
+     * 提交 {@link KvTransaction} 中的操作：先全部编码，再通过 {@link Storage#writeBatch} 一次写入。
+     *
+     * @param operations 键到新值的映射，值为 null 表示删除
+     */
+    boolean commit(Map<String, Object> operations) {
+        log("KV.edit -> commit size: " + operations.size());
+        Map<String, Object> serializedMap = new HashMap<>();
+        List<String> deletes = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : operations.entrySet()) {
+            String key = entry.getKey();
+            if (entry.getValue() == null) {
+                deletes.add(key);
+                continue;
+            }
+            Object serialized = encode(key, entry.getValue());
+            if (serialized == null) {
+                log("KV.edit -> 编码失败, key: " + key);
+                return false;
+            }
+            serializedMap.put(key, serialized);
         }
+
+        boolean stored = storage.writeBatch(serializedMap, deletes);
+        invalidate(operations.keySet());
+        if (keyIndex != null) {
+            keyIndex.onPutAll(serializedMap.keySet(), stored);
+            keyIndex.onDelete(deletes, stored);
+        }
+        log(stored ? "KV.edit -> 提交成功" : "KV.edit -> 提交失败");
+        return stored;
     }
 
     @Override
@@ -82,45 +203,136 @@ public class DefaultKvFacade implements KvFacade {
             return null;
         }
 
+        long stamp = 0;
+        if (cache != null) {
+            @SuppressWarnings("unchecked")
+            T cached = (T) cache.get(key);
+            if (cached != null) {
+                log("KV.get -> Hit cache : " + cached);
+                return cached;
+            }
+            stamp = cache.stamp();
+        }
+
         // 1. Get serialized text from the storage
-        String serializedText = storage.get(key);
-        log("KV.get -> Fetched from storage : " + serializedText);
-        if (serializedText == null) {
+        Object serialized = storage.get(key);
+        log("KV.get -> Fetched from storage : " + serialized);
+        if (serialized == null) {
             log("KV.get -> Fetching from storage failed");
             return null;
         }
 
-        // 2. Deserialize
-        DataInfo dataInfo = serializer.deserialize(serializedText);
-        log("KV.get -> Deserialized");
-        if (dataInfo == null) {
-            log("KV.get -> Deserialization failed");
+        // 2~4. Deserialize, decrypt and convert
+        try {
+            T result = decode(key, serialized);
+            cachePut(key, result, serialized, stamp);
+            return result;
+        } catch (Exception e) {
+            onDecodeFailure(key, e);
             return null;
         }
+    }
 
-        // 3. Decrypt
-        String plainText = null;
-        try {
-            plainText = encryption.decrypt(key, dataInfo.cipherText);
-            log("KV.get -> Decrypted to : " + plainText);
-        } catch (Exception e) {
-            log("KV.get -> Decrypt failed: " + e.getMessage());
+    @Override
+    public <T> T getAs(String key, Type type) {
+        log("KV.getAs -> key: " + key + ", type: " + type);
+        KvUtils.checkNull("Type", type);
+        if (key == null) {
+            log("KV.get -> null key, returning null value ");
+            return null;
         }
-        if (plainText == null) {
-            log("KV.get -> Decrypt failed");
+
+        long stamp = 0;
+        if (cache != null) {
+            Object cached = cache.get(key);
+            Class<?> rawType = rawType(type);
+            if (cached != null && (rawType == null || rawType.isInstance(cached))) {
+                log("KV.get -> Hit cache : " + cached);
+                @SuppressWarnings("unchecked")
+                T result = (T) cached;
+                return result;
+            }
+            stamp = cache.stamp();
+        }
+
+        Object serialized = storage.get(key);
+        log("KV.get -> Fetched from storage : " + serialized);
+        if (serialized == null) {
+            log("KV.get -> Fetching from storage failed");
             return null;
         }
 
-        // 4. Convert the text to original data along with original type
-        T result = null;
         try {
-            result = converter.fromString(plainText, dataInfo);
+            // 基本类型以紧凑格式直接编码，不是 JSON，按记录的类型标记解码；
+            // 自定义 Converter 不支持按类型解码，同样按记录的类型解码
+            if (!(converter instanceof KvConverter)
+                    || DataInfo.isPrimitive(serializer.getDataType(header(serialized)))) {
+                T result = decode(key, serialized);
+                cachePut(key, result, serialized, stamp);
+                return result;
+            }
+
+            // 已知目标类型时只取密文，不解析存储中记录的类名
+            String plainText = decrypt(key, serialized);
+            log("KV.get -> Decrypted to : " + plainText);
+            T result = ((KvConverter) converter).fromString(plainText, type);
             log("KV.get -> Converted to : " + result);
+            cachePut(key, result, serialized, stamp);
+            return result;
         } catch (Exception e) {
-            log("KV.get -> Converter failed");
+            onDecodeFailure(key, e);
+            return null;
         }
+    }
 
-        return result;
+    @Override
+    public int getInt(String key, int defaultValue) {
+        return (int) getPrimitive(key, DataInfo.TYPE_INTEGER, defaultValue);
+    }
+
+    @Override
+    public long getLong(String key, long defaultValue) {
+        return getPrimitive(key, DataInfo.TYPE_LONG, defaultValue);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return getPrimitive(key, DataInfo.TYPE_BOOLEAN, defaultValue ? 1 : 0) != 0;
+    }
+
+    @Override
+    public double getDouble(String key, double defaultValue) {
+        long bits = getPrimitive(key, DataInfo.TYPE_DOUBLE, Double.doubleToRawLongBits(defaultValue));
+        return Double.longBitsToDouble(bits);
+    }
+
+    @Override
+    public <T> Map<String, T> getAll(Collection<String> keys) {
+        KvUtils.checkNull("Keys", keys);
+        log("KV.getAll -> keys: " + keys);
+        Map<String, T> map = new HashMap<>();
+
+        long stamp = 0;
+        Collection<String> missingKeys = keys;
+        if (cache != null) {
+            missingKeys = new ArrayList<>();
+            for (String key : keys) {
+                @SuppressWarnings("unchecked")
+                T cached = (T) cache.get(key);
+                if (cached != null) {
+                    map.put(key, cached);
+                } else {
+                    missingKeys.add(key);
+                }
+            }
+            stamp = cache.stamp();
+        }
+        if (missingKeys.isEmpty()) {
+            return map;
+        }
+
+        map.putAll(decodeAll(storage.getAll(missingKeys), stamp, true));
+        return map;
     }
 
     @Override
@@ -132,33 +344,130 @@ public class DefaultKvFacade implements KvFacade {
 
     @Override
     public <T> Map<String, T> getAll() {
-        Map<String, T> map = new HashMap<>();
-        if (storage.getAll() != null){
-            for (String key : storage.getAll().keySet()) {
-                map.put(key, get(key));
-            }
+        log("KV.getAll");
+        // 只读取一次存储快照，全量解码的结果不写入缓存，避免挤掉热点数据
+        Map<String, Object> snapshot = storage.getAll();
+        if (snapshot == null || snapshot.isEmpty()) {
+            return new HashMap<>();
         }
-        return map;
+        return decodeAll(snapshot, 0, false);
     }
 
     @Override
     public long count() {
-        return storage.count();
+        long count = storage.count();
+        // 类型编号表保存在同一个存储中，不计入数据条数
+        return typeTable.isStored() ? count - 1 : count;
+    }
+
+    @Override
+    public <T> KvIterator<T> scan(int batchSize) {
+        log("KV.scan -> batchSize: " + batchSize);
+        return new DecodingIterator<>(storage.scan(batchSize));
     }
 
     @Override
     public boolean deleteAll() {
-        return storage.deleteAll();
+        boolean deleted = typeTable.clearStorage();
+        if (keyIndex != null) {
+            keyIndex.onDeleteAll(deleted);
+        }
+        deleted &= streamStore.deleteAll();
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+        return deleted;
+    }
+
+    @Override
+    public boolean deleteAll(Collection<String> keys) {
+        KvUtils.checkNull("Keys", keys);
+        for (String key : keys) {
+            TypeTable.checkNotReserved(key);
+        }
+        boolean deleted = keys.isEmpty() || storage.deleteAll(keys);
+        invalidate(keys);
+        if (keyIndex != null) {
+            keyIndex.onDelete(keys, deleted);
+        }
+        return deleted;
     }
 
     @Override
     public boolean delete(String key) {
-        return storage.delete(key);
+        TypeTable.checkNotReserved(key);
+        boolean deleted = storage.delete(key);
+        invalidate(key);
+        if (keyIndex != null) {
+            keyIndex.onDelete(Collections.singletonList(key), deleted);
+        }
+        return deleted;
+    }
+
+    @Override
+    public List<String> keys(String prefix) {
+        KvUtils.checkNull("Prefix", prefix);
+        log("KV.keys -> prefix: " + prefix);
+        if (keyIndex != null) {
+            return keyIndex.keys(prefix);
+        }
+        List<String> keys = storage.keys(prefix);
+        keys.remove(TypeTable.STORAGE_KEY);
+        return keys;
+    }
+
+    @Override
+    public <T> Map<String, T> getByPrefix(String prefix) {
+        List<String> keys = keys(prefix);
+        return keys.isEmpty() ? new HashMap<>() : getAll(keys);
+    }
+
+    @Override
+    public boolean deleteByPrefix(String prefix) {
+        List<String> keys = keys(prefix);
+        return keys.isEmpty() || deleteAll(keys);
     }
 
     @Override
     public boolean contains(String key) {
-        return storage.contains(key);
+        // 类型编号表对使用者不可见
+        return !TypeTable.isReserved(key) && storage.contains(key);
+    }
+
+    @Override
+    public <T> Future<Boolean> putAsync(String key, T value) {
+        KvUtils.checkNull("Key", key);
+        TypeTable.checkNotReserved(key);
+        return asyncExecutor.submit(key, () -> put(key, value), true);
+    }
+
+    @Override
+    public <T> Future<T> getAsync(String key) {
+        KvUtils.checkNull("Key", key);
+        return asyncExecutor.submit(key, () -> get(key), false);
+    }
+
+    @Override
+    public <T> Future<T> getAsync(String key, KvCallback<T> callback) {
+        KvUtils.checkNull("Key", key);
+        KvUtils.checkNull("Callback", callback);
+        return asyncExecutor.submit(key, () -> {
+            T result = get(key);
+            callback.onResult(result);
+            return result;
+        }, false);
+    }
+
+    @Override
+    public Future<Boolean> deleteAsync(String key) {
+        KvUtils.checkNull("Key", key);
+        TypeTable.checkNotReserved(key);
+        return asyncExecutor.submit(key, () -> delete(key), true);
+    }
+
+    @Override
+    public void flush() {
+        asyncExecutor.flush();
     }
 
     @Override
@@ -166,11 +475,592 @@ public class DefaultKvFacade implements KvFacade {
         return true;
     }
 
+    @Override
+    public boolean putStream(String key, InputStream input) {
+        KvUtils.checkNull("Key", key);
+        KvUtils.checkNull("Input", input);
+        log("KV.putStream -> key: " + key);
+        int scheme = EncryptionPolicy.DEFAULT_SCHEME;
+        if (encryptionPolicy != null) {
+            scheme = encryptionPolicy.getScheme(key);
+        }
+        boolean stored = streamStore.write(key, input, scheme);
+        log(stored ? "KV.putStream -> 存储成功" : "KV.putStream -> 存储操作失败");
+        return stored;
+    }
+
+    @Override
+    public InputStream getStream(String key) {
+        log("KV.getStream -> key: " + key);
+        if (key == null) {
+            return null;
+        }
+        try {
+            return streamStore.open(key);
+        } catch (IOException | RuntimeException e) {
+            onDecodeFailure(key, e);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean deleteStream(String key) {
+        KvUtils.checkNull("Key", key);
+        log("KV.deleteStream -> key: " + key);
+        return streamStore.delete(key);
+    }
+
     @Override
     public void destroy() {
+        asyncExecutor.flush();
+        asyncExecutor.shutdown();
+        synchronized (this) {
+            if (decodePool != null) {
+                decodePool.shutdown();
+                decodePool = null;
+            }
+        }
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+        defaultCodec.close();
+        if (codec instanceof DeflateCodec) {
+            ((DeflateCodec) codec).close();
+        }
+    }
+
+    @Override
+    public void trimMemory(int level) {
+        if (cache != null) {
+            cache.trimMemory(level);
+        }
+    }
+
+    @Override
+    public CacheStats getCacheStats() {
+        return cache == null ? CacheStats.EMPTY : cache.stats();
+    }
+
+    /**
+     * 将值依次转换、加密、序列化为可存储的文本。
+     *
+     * @return 序列化后的文本，任一步骤失败返回 null
+     */
+    private <T> Object encode(String key, T value) {
+        // 1. 转换为文本
+        String plainText = converter.toString(value);
+        log("KV.put -> 转换为文本: " + plainText);
+        if (plainText == null) {
+            log("KV.put -> 转换失败");
+            return null;
+        }
+        if (binaryValues) {
+            return encodeBinary(key, value, plainText);
+        }
+
+        // 2. 超过阈值的文本先压缩，压缩后没有变小则保留原文
+        int codecId = 0;
+        if (codec != null && plainText.length() >= compressionThreshold) {
+            try {
+                String compressed = Base64.encodeToString(
+                        codec.compress(plainText.getBytes(StandardCharsets.UTF_8)), Base64.NO_WRAP);
+                if (compressed.length() < plainText.length()) {
+                    log("KV.put -> 压缩: " + plainText.length() + " -> " + compressed.length());
+                    plainText = compressed;
+                    codecId = codec.getId();
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                log("KV.put -> 压缩失败，按原文保存");
+            }
+        }
+
+        // 3. 按策略选择加密方案并加密文本
+        int scheme = EncryptionPolicy.DEFAULT_SCHEME;
+        String cipherText = null;
+        try {
+            if (encryptionPolicy != null) {
+                scheme = encryptionPolicy.getScheme(key);
+            }
+            cipherText = encryption(scheme).encrypt(key, plainText);
+            log("KV.put -> 加密为: " + cipherText);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        if (cipherText == null) {
+            log("KV.put -> 加密失败");
+            return null;
+        }
+
+        // 4. 将密文与原始对象一起序列化
+        String serializedText = serializer.serialize(cipherText, value, scheme, codecId);
+        log("KV.put -> 序列化为: " + serializedText);
+        if (serializedText == null) {
+            log("KV.put -> 序列化失败");
+            return null;
+        }
+        return serializedText;
+    }
+
+    /**
+     * 将存储中的文本依次反序列化、解密、转换为原始对象。
+     *
+     * @return 原始对象
+     * @throws Exception 任一步骤失败时抛出
+     */
+    private <T> T decode(String key, Object serialized) throws Exception {
+        // 2. Deserialize
+        DataInfo dataInfo = serializer.deserialize(header(serialized));
+        log("KV.get -> Deserialized");
+        if (dataInfo == null) {
+            throw new IllegalStateException("Deserialization failed");
+        }
+
+        // 3. Decrypt
+        String plainText = serialized instanceof byte[]
+                ? decryptBinary(key, (byte[]) serialized, dataInfo.encryptionScheme, dataInfo.codecId)
+                : decrypt(key, dataInfo.cipherText, dataInfo.encryptionScheme, dataInfo.codecId);
+        log("KV.get -> Decrypted to : " + plainText);
+
+        // 4. Convert the text to original data along with original type
+        T result = converter.fromString(plainText, dataInfo);
+        log("KV.get -> Converted to : " + result);
+        return result;
+    }
+
+    /**
+     * 读取基本类型的值，统一以 long 返回（boolean 为 0/1，double 为其位表示），避免装箱。
+     * 存储的是紧凑格式的同类型数据时直接解析明文，否则退回通用解码并转换数值。
+     *
+     * @param type        期望的类型标记
+     * @param defaultBits 不存在或无法转换时返回的值
+     */
+    private long getPrimitive(String key, char type, long defaultBits) {
+        log("KV.get -> key: " + key);
+        if (key == null) {
+            return defaultBits;
+        }
+
+        long stamp = 0;
+        if (cache != null) {
+            Object cached = cache.get(key);
+            if (cached != null) {
+                return toBits(cached, type, defaultBits);
+            }
+            stamp = cache.stamp();
+        }
+
+        Object serialized = storage.get(key);
+        log("KV.get -> Fetched from storage : " + serialized);
+        if (serialized == null) {
+            return defaultBits;
+        }
+
+        try {
+            if (serializer.getDataType(header(serialized)) == type) {
+                String plainText = decrypt(key, serialized);
+                long bits = switch (type) {
+                    case DataInfo.TYPE_INTEGER -> Integer.parseInt(plainText);
+                    case DataInfo.TYPE_LONG -> Long.parseLong(plainText);
+                    case DataInfo.TYPE_BOOLEAN -> Boolean.parseBoolean(plainText) ? 1 : 0;
+                    default -> Double.doubleToRawLongBits(Double.parseDouble(plainText));
+                };
+                if (cache != null) {
+                    cachePut(key, fromBits(bits, type), serialized, stamp);
+                }
+                return bits;
+            }
+            Object value = decode(key, serialized);
+            cachePut(key, value, serialized, stamp);
+            return toBits(value, type, defaultBits);
+        } catch (Exception e) {
+            onDecodeFailure(key, e);
+            return defaultBits;
+        }
+    }
+
+    /**
+     * 获取方案编号对应的加密实现。
+     *
+     * @throws IllegalStateException 方案未注册时抛出，通常是数据由注册了更多方案的配置写入
+     */
+    private Encryption encryption(int scheme) {
+        Encryption result = scheme >= 0 && scheme < encryptionSchemes.length ? encryptionSchemes[scheme] : null;
+        if (result == null) {
+            throw new IllegalStateException("Unknown encryption scheme: " + scheme);
+        }
+        return result;
+    }
+
+    /**
+     * 按头部记录的加密方案与压缩格式还原明文，不解析类型信息。
+     */
+    private String decrypt(String key, Object serialized) throws Exception {
+        String header = header(serialized);
+        int scheme = serializer.getEncryptionScheme(header);
+        int codecId = serializer.getCodecId(header);
+        if (serialized instanceof byte[]) {
+            return decryptBinary(key, (byte[]) serialized, scheme, codecId);
+        }
+        return decrypt(key, serializer.getCipherText(header), scheme, codecId);
+    }
+
+    /**
+     * 解密密文，如果写入时经过压缩则再解压。
+     *
+     * @throws Exception 解密或解压失败时抛出
+     */
+    private String decrypt(String key, String cipherText, int scheme, int codecId) throws Exception {
+        String plainText = encryption(scheme).decrypt(key, cipherText);
+        if (plainText == null) {
+            throw new IllegalStateException("Decrypt failed");
+        }
+        if (codecId == 0) {
+            return plainText;
+        }
+        byte[] data = codec(codecId).decompress(Base64.decode(plainText, Base64.NO_WRAP));
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 以字节保存值：{@link Storage#BINARY_PREFIX} | 序列化头（UTF-8，以 '@' 结尾） | 密文。
+     * 压缩和加密都直接处理字节，不经过 Base64。
+     */
+    private <T> byte[] encodeBinary(String key, T value, String plainText) {
+        byte[] plain = plainText.getBytes(StandardCharsets.UTF_8);
+        int codecId = 0;
+        if (codec != null && plain.length >= compressionThreshold) {
+            try {
+                byte[] compressed = codec.compress(plain);
+                if (compressed.length < plain.length) {
+                    log("KV.put -> 压缩: " + plain.length + " -> " + compressed.length);
+                    plain = compressed;
+                    codecId = codec.getId();
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                log("KV.put -> 压缩失败，按原文保存");
+            }
+        }
+
+        int scheme = EncryptionPolicy.DEFAULT_SCHEME;
+        byte[] cipher = null;
+        try {
+            if (encryptionPolicy != null) {
+                scheme = encryptionPolicy.getScheme(key);
+            }
+            cipher = encryption(scheme).encryptBytes(key, plain);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        if (cipher == null) {
+            log("KV.put -> 加密失败");
+            return null;
+        }
+
+        String header = ((KvSerializer) serializer).serializeHeader(value, scheme, codecId);
+        if (header == null) {
+            log("KV.put -> 序列化失败");
+            return null;
+        }
+        byte[] headerBytes = header.getBytes(StandardCharsets.UTF_8);
+        byte[] result = new byte[1 + headerBytes.length + cipher.length];
+        result[0] = Storage.BINARY_PREFIX;
+        System.arraycopy(headerBytes, 0, result, 1, headerBytes.length);
+        System.arraycopy(cipher, 0, result, 1 + headerBytes.length, cipher.length);
+        log("KV.put -> 序列化为 " + result.length + " 字节");
+        return result;
+    }
+
+    /**
+     * 取出存储值中的序列化头：文本值原样返回，字节值返回以 '@' 结尾的头部，之后的密文不解码。
+     */
+    private static String header(Object serialized) {
+        if (serialized instanceof String) {
+            return (String) serialized;
+        }
+        if (serialized instanceof byte[]) {
+            byte[] bytes = (byte[]) serialized;
+            int end = binaryHeaderEnd(bytes);
+            return new String(bytes, 1, end - 1, StandardCharsets.UTF_8);
+        }
+        throw new IllegalStateException("Unsupported stored value: " + serialized);
+    }
+
+    /**
+     * @return 字节值中密文的起始位置
+     */
+    private static int binaryHeaderEnd(byte[] bytes) {
+        if (bytes.length == 0 || bytes[0] != Storage.BINARY_PREFIX) {
+            throw new IllegalStateException("Invalid binary value");
+        }
+        // '@' 不会出现在 UTF-8 多字节字符中
+        for (int i = 1; i < bytes.length; i++) {
+            if (bytes[i] == '@') {
+                return i + 1;
+            }
+        }
+        throw new IllegalStateException("Invalid binary value");
+    }
+
+    private String decryptBinary(String key, byte[] bytes, int scheme, int codecId) throws Exception {
+        int start = binaryHeaderEnd(bytes);
+        byte[] plain = encryption(scheme).decryptBytes(key, Arrays.copyOfRange(bytes, start, bytes.length));
+        if (plain == null) {
+            throw new IllegalStateException("Decrypt failed");
+        }
+        if (codecId != 0) {
+            plain = codec(codecId).decompress(plain);
+        }
+        return new String(plain, StandardCharsets.UTF_8);
+    }
+
+    private Codec codec(int codecId) {
+        if (codec != null && codec.getId() == codecId) {
+            return codec;
+        }
+        if (codecId == DeflateCodec.ID) {
+            return defaultCodec;
+        }
+        throw new IllegalStateException("Unknown codec: " + codecId);
+    }
+
+    private static long toBits(Object value, char type, long defaultBits) {
+        if (type == DataInfo.TYPE_BOOLEAN) {
+            return value instanceof Boolean ? ((Boolean) value ? 1 : 0) : defaultBits;
+        }
+        if (!(value instanceof Number)) {
+            return defaultBits;
+        }
+        Number number = (Number) value;
+        return switch (type) {
+            case DataInfo.TYPE_INTEGER -> number.intValue();
+            case DataInfo.TYPE_LONG -> number.longValue();
+            default -> Double.doubleToRawLongBits(number.doubleValue());
+        };
+    }
+
+    private static Object fromBits(long bits, char type) {
+        return switch (type) {
+            case DataInfo.TYPE_INTEGER -> (int) bits;
+            case DataInfo.TYPE_LONG -> bits;
+            case DataInfo.TYPE_BOOLEAN -> bits != 0;
+            default -> Double.longBitsToDouble(bits);
+        };
+    }
+
+    /**
+     * 解码一批存储文本。条目数达到并行阈值时在 ForkJoin 线程池中并行解码，
+     * 失败的键不放入结果，并在当前线程中逐个通知 {@link DecodeFailureListener}。
+     *
+     * @param serializedMap 存储中的键值快照
+     * @param stamp         读取存储前获取的缓存失效戳
+     * @param cacheResults  是否将解码结果写入缓存
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Map<String, T> decodeAll(Map<String, ?> serializedMap, long stamp, boolean cacheResults) {
+        String[] keys = new String[serializedMap.size()];
+        Object[] texts = new Object[keys.length];
+        int size = 0;
+        for (Map.Entry<String, ?> entry : serializedMap.entrySet()) {
+            // 跳过与数据保存在一起的类型编号表
+            if (TypeTable.isReserved(entry.getKey())) {
+                continue;
+            }
+            keys[size] = entry.getKey();
+            texts[size] = entry.getValue();
+            size++;
+        }
+
+        Object[] values = new Object[size];
+        Exception[] errors = new Exception[size];
+        if (parallelDecodeThreshold > 0 && size >= parallelDecodeThreshold) {
+            ForkJoinPool pool = getDecodePool();
+            int batchSize = Math.max(16, size / (pool.getParallelism() * 4));
+            pool.invoke(new DecodeTask(keys, texts, values, errors, 0, size, batchSize));
+        } else {
+            decodeRange(keys, texts, values, errors, 0, size);
+        }
+
+        Map<String, T> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            if (errors[i] != null) {
+                onDecodeFailure(keys[i], errors[i]);
+            } else if (values[i] != null) {
+                map.put(keys[i], (T) values[i]);
+                if (cacheResults) {
+                    cachePut(keys[i], values[i], texts[i], stamp);
+                }
+            }
+        }
+        return map;
+    }
+
+    private void decodeRange(String[] keys, Object[] texts, Object[] values, Exception[] errors, int from, int to) {
+        for (int i = from; i < to; i++) {
+            try {
+                values[i] = decode(keys[i], texts[i]);
+            } catch (Exception e) {
+                errors[i] = e;
+            }
+        }
+    }
+
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType && ((ParameterizedType) type).getRawType() instanceof Class) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        return null;
+    }
+
+    private synchronized ForkJoinPool getDecodePool() {
+        if (decodePool == null) {
+            decodePool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return decodePool;
+    }
+
+    private void cachePut(String key, Object value, Object serialized, long stamp) {
+        if (cache != null && value != null) {
+            cache.put(key, value, KvCache.estimate(key, serialized), stamp);
+        }
+    }
+
+    private void onDecodeFailure(String key, Exception cause) {
+        log("KV.get -> Decode failed, key: " + key + ", cause: " + cause);
+        if (decodeFailureListener != null) {
+            decodeFailureListener.onDecodeFailure(key, cause);
+        }
+    }
+
+    private void invalidate(Collection<String> keys) {
+        if (cache != null) {
+            for (String key : keys) {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    private void invalidate(String key) {
+        if (cache != null) {
+            cache.invalidate(key);
+        }
     }
 
     private void log(String message) {
         logInterceptor.onLog(message);
     }
+
+    /**
+     * 包装存储的迭代器，跳过类型编号表，值在首次读取时才解码，只遍历键名时不产生解码开销。
+     */
+    private final class DecodingIterator<T> implements KvIterator<T> {
+
+        private final KvIterator<Object> iterator;
+        private Map.Entry<String, Object> next;
+
+        DecodingIterator(KvIterator<Object> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && iterator.hasNext()) {
+                Map.Entry<String, Object> entry = iterator.next();
+                if (!TypeTable.isReserved(entry.getKey())) {
+                    next = entry;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, T> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, Object> entry = next;
+            next = null;
+            return new DecodingEntry<>(entry.getKey(), entry.getValue());
+        }
+
+        @Override
+        public void close() {
+            next = null;
+            iterator.close();
+        }
+    }
+
+    private final class DecodingEntry<T> implements Map.Entry<String, T> {
+
+        private final String key;
+        private Object text;
+        private T value;
+
+        DecodingEntry(String key, Object text) {
+            this.key = key;
+            this.text = text;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public T getValue() {
+            if (text != null) {
+                try {
+                    value = decode(key, text);
+                } catch (Exception e) {
+                    onDecodeFailure(key, e);
+                }
+                text = null;
+            }
+            return value;
+        }
+
+        @Override
+        public T setValue(T value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * 将一段区间的解码任务二分拆分，直到区间不超过 batchSize 后顺序解码。
+     */
+    private final class DecodeTask extends RecursiveAction {
+        private final String[] keys;
+        private final Object[] texts;
+        private final Object[] values;
+        private final Exception[] errors;
+        private final int from;
+        private final int to;
+        private final int batchSize;
+
+        DecodeTask(String[] keys, Object[] texts, Object[] values, Exception[] errors, int from, int to,
+                   int batchSize) {
+            this.keys = keys;
+            this.texts = texts;
+            this.values = values;
+            this.errors = errors;
+            this.from = from;
+            this.to = to;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batchSize) {
+                decodeRange(keys, texts, values, errors, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new DecodeTask(keys, texts, values, errors, from, middle, batchSize),
+                    new DecodeTask(keys, texts, values, errors, middle, to, batchSize));
+        }
+    }
 }
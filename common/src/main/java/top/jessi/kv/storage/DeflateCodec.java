@@ -0,0 +1,144 @@
+package top.jessi.kv.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 基于 {@link Deflater} 的压缩实现。
+ *
+ * <p>Deflater、Inflater 放在容量有限的池中复用，压缩时不会重复分配本地资源；超出池容量的实例
+ * 用完立即 {@code end()} 释放本地内存，{@link #close()} 释放池中的实例。每个线程复用自己的缓冲区。</p>
+ */
+public class DeflateCodec implements Codec {
+
+    /** 内置 Deflate 格式的编号 */
+    public static final int ID = 1;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    /** 池中最多保留的 Deflater、Inflater 数量 */
+    private static final int MAX_POOLED = 4;
+
+    private final int level;
+    /** guarded by itself */
+    private final ArrayDeque<Deflater> deflaters = new ArrayDeque<>();
+    /** guarded by itself */
+    private final ArrayDeque<Inflater> inflaters = new ArrayDeque<>();
+    private final ThreadLocal<byte[]> bufferHolder = new ThreadLocal<>();
+
+    public DeflateCodec() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level 压缩级别，0-9 或 {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public DeflateCodec(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) {
+        Deflater deflater;
+        synchronized (deflaters) {
+            deflater = deflaters.poll();
+        }
+        if (deflater == null) {
+            deflater = new Deflater(level);
+        }
+        byte[] buffer = buffer();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                output.write(buffer, 0, count);
+            }
+        } finally {
+            deflater.reset();
+            release(deflater);
+        }
+        return output.toByteArray();
+    }
+
+    @Override
+    public byte[] decompress(byte[] data) throws DataFormatException {
+        Inflater inflater;
+        synchronized (inflaters) {
+            inflater = inflaters.poll();
+        }
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        byte[] buffer = buffer();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * 4);
+        try {
+            inflater.setInput(data);
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated compressed data");
+                }
+                output.write(buffer, 0, count);
+            }
+        } finally {
+            inflater.reset();
+            release(inflater);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * 释放池中的 Deflater、Inflater 占用的本地内存，之后仍可继续使用，需要时会重新创建。
+     */
+    public void close() {
+        synchronized (deflaters) {
+            for (Deflater deflater : deflaters) {
+                deflater.end();
+            }
+            deflaters.clear();
+        }
+        synchronized (inflaters) {
+            for (Inflater inflater : inflaters) {
+                inflater.end();
+            }
+            inflaters.clear();
+        }
+    }
+
+    private void release(Deflater deflater) {
+        synchronized (deflaters) {
+            if (deflaters.size() < MAX_POOLED) {
+                deflaters.push(deflater);
+                return;
+            }
+        }
+        deflater.end();
+    }
+
+    private void release(Inflater inflater) {
+        synchronized (inflaters) {
+            if (inflaters.size() < MAX_POOLED) {
+                inflaters.push(inflater);
+                return;
+            }
+        }
+        inflater.end();
+    }
+
+    private byte[] buffer() {
+        byte[] buffer = bufferHolder.get();
+        if (buffer == null) {
+            buffer = new byte[BUFFER_SIZE];
+            bufferHolder.set(buffer);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,25 @@
+package top.jessi.kv.storage;
+
+/**
+ * 写入的持久化方式，通过 {@link KvBuilder#setDurability(Durability)} 设置。
+ *
+ * <p>未设置时各存储保持原有行为。</p>
+ */
+public enum Durability {
+
+    /**
+     * 异步持久化：写入交给系统或后台线程后立即返回，进程崩溃一般不丢数据，断电可能丢失最近的写入。
+     */
+    ASYNC,
+
+    /**
+     * 组提交：并发写入在一个时间窗口内合并为一次物理提交（一次事务或一次同步落盘），
+     * 每次写入在所属批次同步落盘后才返回，吞吐量高于 {@link #SYNC}，单次延迟略高。
+     */
+    GROUP_COMMIT,
+
+    /**
+     * 同步持久化：每次写入都同步落盘后才返回，最安全也最慢。
+     */
+    SYNC
+}
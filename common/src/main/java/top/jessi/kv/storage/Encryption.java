@@ -1,5 +1,9 @@
 package top.jessi.kv.storage;
 
+import android.util.Base64;
+
+import java.nio.charset.StandardCharsets;
+
 /**
  * 加密解密中间层，用于对存储的值进行加密和解明。
  *
@@ -34,4 +38,28 @@ public interface Encryption {
      */
     String decrypt(String key, String value) throws Exception;
 
+    /**
+     * 加密任意字节，供支持 byte[] 值的存储使用。默认先 Base64 编码再调用 {@link #encrypt(String, String)}，
+     * 能直接处理字节的实现应重写此方法和 {@link #decryptBytes(String, byte[])}，避免编码开销。
+     *
+     * @param key   加密密钥
+     * @param value 明文字节
+     * @return 密文字节，失败时返回 null
+     */
+    default byte[] encryptBytes(String key, byte[] value) throws Exception {
+        String cipherText = encrypt(key, Base64.encodeToString(value, Base64.NO_WRAP));
+        return cipherText == null ? null : cipherText.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 解密 {@link #encryptBytes(String, byte[])} 的结果。
+     *
+     * @param key   解密密钥
+     * @param value 密文字节
+     * @return 明文字节，失败时返回 null
+     */
+    default byte[] decryptBytes(String key, byte[] value) throws Exception {
+        String plainText = decrypt(key, new String(value, StandardCharsets.UTF_8));
+        return plainText == null ? null : Base64.decode(plainText, Base64.NO_WRAP);
+    }
 }
@@ -0,0 +1,23 @@
+package top.jessi.kv.storage;
+
+/**
+ * 按键选择加密方案，使不敏感的高频键（如界面状态、计数器）可以跳过加密。
+ *
+ * <p>方案编号通过 {@link KvBuilder#addEncryption(int, Encryption)} 注册，编号会写入值的头部，
+ * 读取时按写入时的方案解密，因此修改策略不影响已有数据的读取。已经使用过的编号不应再指向其它加密实现。</p>
+ *
+ * @see KvBuilder#setEncryptionPolicy(EncryptionPolicy)
+ */
+public interface EncryptionPolicy {
+
+    /** 默认方案编号，对应 {@link KvBuilder#setEncryption(Encryption)} 设置的加密实现 */
+    int DEFAULT_SCHEME = 0;
+
+    /**
+     * 获取键使用的加密方案。
+     *
+     * @param key 键名
+     * @return 已注册的方案编号，返回 {@link #DEFAULT_SCHEME} 表示使用默认加密
+     */
+    int getScheme(String key);
+}
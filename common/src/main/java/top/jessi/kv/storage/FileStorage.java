@@ -5,8 +5,17 @@ import android.os.Environment;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -21,16 +30,22 @@ import top.jessi.jhelper.file.Files;
  */
 public class FileStorage implements Storage {
 
+    /** 异步写入线程空闲多久后退出 */
+    private static final int WRITE_KEEP_ALIVE_SECONDS = 10;
+
     private final Map<String, String> mAllMap;
     private final Gson mGson;
     private final String FILE_PATH;
     private final Pattern mKVPattern = Pattern.compile("\\{([^}]+)\\}");
+    private volatile Durability mDurability;
+    private boolean mWriteScheduled;
+    private Executor mWriteExecutor;
 
     public FileStorage() {
         FILE_PATH = Environment.getExternalStorageDirectory().getPath() + "/JToolA/KVFILE.txt";
         Files.create(FILE_PATH);
         mGson = new Gson();
-        mAllMap = getAll();
+        mAllMap = load();
     }
 
     public FileStorage(String filePath) {
@@ -41,26 +56,65 @@ public class FileStorage implements Storage {
             }
         }
         mGson = new Gson();
-        mAllMap = getAll();
+        mAllMap = load();
     }
 
     @Override
-    public <T> boolean put(String key, T value) {
+    public synchronized <T> boolean put(String key, T value) {
         KvUtils.checkNull("key", key);
         mAllMap.put(key, (String) value);
-        return Files.write(FILE_PATH, mGson.toJson(mAllMap), false);
+        return persist();
+    }
+
+    @Override
+    public synchronized <T> boolean putAll(Map<String, T> entries) {
+        // 先校验全部键，避免内存中的数据只更新一部分
+        for (String key : entries.keySet()) {
+            KvUtils.checkNull("key", key);
+        }
+        for (Map.Entry<String, T> entry : entries.entrySet()) {
+            mAllMap.put(entry.getKey(), (String) entry.getValue());
+        }
+        return persist();
+    }
+
+    @Override
+    public synchronized <T> boolean writeBatch(Map<String, T> puts, Collection<String> deletes) {
+        for (String key : puts.keySet()) {
+            KvUtils.checkNull("key", key);
+        }
+        for (String key : deletes) {
+            mAllMap.remove(key);
+        }
+        for (Map.Entry<String, T> entry : puts.entrySet()) {
+            mAllMap.put(entry.getKey(), (String) entry.getValue());
+        }
+        return persist();
     }
 
     @SuppressWarnings("unchecked")
     @Override
-    public <T> T get(String key) {
+    public synchronized <T> T get(String key) {
         return (T) mAllMap.get(key);
     }
 
     @SuppressWarnings("unchecked")
     @Override
-    public <T> Map<String, T> getAll() {
-        Map<String, T> map = new HashMap<>();
+    public synchronized <T> Map<String, T> getAll() {
+        return new HashMap<>((Map<String, T>) mAllMap);
+    }
+
+    @Override
+    public synchronized <T> KvIterator<T> scan(int batchSize) {
+        // 只复制键名，值在遍历时按批读取
+        return KvIterator.ofKeys(mAllMap.keySet().toArray(new String[0]), this, batchSize);
+    }
+
+    /**
+     * 从文件中读取全部数据。
+     */
+    private Map<String, String> load() {
+        Map<String, String> map = new HashMap<>();
         try {
             String allData = Files.read(FILE_PATH);
             Matcher matcher = mKVPattern.matcher(allData);
@@ -69,7 +123,7 @@ public class FileStorage implements Storage {
                 }.getType());
                 if (data != null) {
                     for (Map.Entry<String, String> entry : data.entrySet()) {
-                        map.put(entry.getKey(), (T) entry.getValue());
+                        map.put(entry.getKey(), entry.getValue());
                     }
                 }
             }
@@ -80,11 +134,10 @@ public class FileStorage implements Storage {
     }
 
     @Override
-    public boolean delete(String key) {
+    public synchronized boolean delete(String key) {
         try {
             mAllMap.remove(key);
-            Files.write(FILE_PATH, mGson.toJson(mAllMap), false);
-            return true;
+            return persist();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -92,11 +145,23 @@ public class FileStorage implements Storage {
     }
 
     @Override
-    public boolean deleteAll() {
+    public synchronized boolean deleteAll(Collection<String> keys) {
+        try {
+            for (String key : keys) {
+                mAllMap.remove(key);
+            }
+            return persist();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized boolean deleteAll() {
         try {
             mAllMap.clear();
-            Files.write(FILE_PATH, mGson.toJson(mAllMap), false);
-            return true;
+            return persist();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -104,12 +169,84 @@ public class FileStorage implements Storage {
     }
 
     @Override
-    public long count() {
+    public void setDurability(Durability durability) {
+        mDurability = durability;
+    }
+
+    @Override
+    public synchronized long count() {
         return mAllMap.size();
     }
 
     @Override
-    public boolean contains(String key) {
+    public synchronized boolean contains(String key) {
         return mAllMap.containsKey(key);
     }
+
+    /**
+     * 按持久化方式将全部数据写入文件，调用方需持有本对象的锁。
+     */
+    private boolean persist() {
+        if (mDurability == Durability.ASYNC) {
+            // 后台线程写入最新的数据，连续多次写入只落盘一次
+            if (!mWriteScheduled) {
+                mWriteScheduled = true;
+                getWriteExecutor().execute(this::writeLatest);
+            }
+            return true;
+        }
+        String json = mGson.toJson(mAllMap);
+        if (mDurability == Durability.SYNC) {
+            return writeSynced(json);
+        }
+        return Files.write(FILE_PATH, json, false);
+    }
+
+    private void writeLatest() {
+        String json;
+        synchronized (this) {
+            mWriteScheduled = false;
+            json = mGson.toJson(mAllMap);
+        }
+        Files.write(FILE_PATH, json, false);
+    }
+
+    /**
+     * 先写入临时文件并同步落盘，再重命名覆盖数据文件，写入中途崩溃时原文件保持完整。
+     */
+    private boolean writeSynced(String json) {
+        File temp = new File(FILE_PATH + ".tmp");
+        try {
+            try (FileOutputStream output = new FileOutputStream(temp, false)) {
+                output.write(json.getBytes(StandardCharsets.UTF_8));
+                output.getFD().sync();
+            }
+            if (temp.renameTo(new File(FILE_PATH))) {
+                return true;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (temp.exists() && !temp.delete()) {
+            temp.deleteOnExit();
+        }
+        return false;
+    }
+
+    /**
+     * 单线程的写入线程池，空闲后线程自动退出，无需关闭。
+     */
+    private synchronized Executor getWriteExecutor() {
+        if (mWriteExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, WRITE_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "KV-FileStorage");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+            mWriteExecutor = executor;
+        }
+        return mWriteExecutor;
+    }
 }
@@ -0,0 +1,222 @@
+package top.jessi.kv.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link Durability#GROUP_COMMIT} 的实现：将并发写入合并为一次 {@link Storage#writeBatch} 物理提交。
+ *
+ * <p>第一个到达的写入线程成为提交者，在等待窗口结束后（窗口为 0 时立即）取走当前批次并提交，
+ * 提交期间到达的写入进入下一批次；其它线程阻塞到所属批次提交完成，返回该批次的结果。
+ * 被包装的存储以 {@link Durability#SYNC} 方式工作，读取直接转发。</p>
+ */
+final class GroupCommitStorage implements Storage {
+
+    /** 批次中表示删除的占位值 */
+    private static final Object DELETED = new Object();
+
+    private final Storage storage;
+    private final long windowMillis;
+    private final Object lock = new Object();
+    /** 正在收集写入的批次 */
+    private Batch pending;
+    private boolean committing;
+
+    GroupCommitStorage(Storage storage, long windowMillis) {
+        this.storage = storage;
+        this.windowMillis = windowMillis;
+    }
+
+    @Override
+    public <T> boolean put(String key, T value) {
+        KvUtils.checkNull("key", key);
+        Map<String, Object> operations = new HashMap<>(2);
+        operations.put(key, value);
+        return submit(operations, false);
+    }
+
+    @Override
+    public <T> boolean putAll(Map<String, T> entries) {
+        for (String key : entries.keySet()) {
+            KvUtils.checkNull("key", key);
+        }
+        return submit(new HashMap<>(entries), false);
+    }
+
+    @Override
+    public boolean delete(String key) {
+        Map<String, Object> operations = new HashMap<>(2);
+        operations.put(key, DELETED);
+        return submit(operations, false);
+    }
+
+    @Override
+    public boolean deleteAll(Collection<String> keys) {
+        Map<String, Object> operations = new HashMap<>();
+        for (String key : keys) {
+            operations.put(key, DELETED);
+        }
+        return submit(operations, false);
+    }
+
+    @Override
+    public boolean deleteAll() {
+        return submit(null, true);
+    }
+
+    @Override
+    public <T> boolean writeBatch(Map<String, T> puts, Collection<String> deletes) {
+        Map<String, Object> operations = new HashMap<>();
+        for (String key : deletes) {
+            operations.put(key, DELETED);
+        }
+        for (String key : puts.keySet()) {
+            KvUtils.checkNull("key", key);
+        }
+        operations.putAll(puts);
+        return submit(operations, false);
+    }
+
+    @Override
+    public <T> T get(String key) {
+        return storage.get(key);
+    }
+
+    @Override
+    public <T> Map<String, T> getAll() {
+        return storage.getAll();
+    }
+
+    @Override
+    public <T> Map<String, T> getAll(Collection<String> keys) {
+        return storage.getAll(keys);
+    }
+
+    @Override
+    public <T> KvIterator<T> scan(int batchSize) {
+        return storage.scan(batchSize);
+    }
+
+    @Override
+    public boolean supportsBytes() {
+        return storage.supportsBytes();
+    }
+
+    @Override
+    public boolean supportsPrefixQuery() {
+        return storage.supportsPrefixQuery();
+    }
+
+    @Override
+    public List<String> keys(String prefix) {
+        return storage.keys(prefix);
+    }
+
+    @Override
+    public long count() {
+        return storage.count();
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return storage.contains(key);
+    }
+
+    /**
+     * 将写入加入当前批次并等待其提交。
+     *
+     * @param operations 键到新值（或 {@link #DELETED}）的映射
+     * @param clear      是否在这些写入之前清空存储
+     */
+    private boolean submit(Map<String, Object> operations, boolean clear) {
+        Batch batch;
+        synchronized (lock) {
+            if (pending == null) {
+                pending = new Batch();
+            }
+            batch = pending;
+            if (clear) {
+                // 清空之前的写入已无意义
+                batch.operations.clear();
+                batch.clear = true;
+            } else {
+                batch.operations.putAll(operations);
+            }
+            boolean interrupted = false;
+            while (!batch.done && committing) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    // 写入已加入批次，必须等到提交完成
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (batch.done) {
+                return batch.result;
+            }
+            // 当前没有提交在进行，由本线程提交
+            committing = true;
+        }
+
+        if (windowMillis > 0) {
+            try {
+                Thread.sleep(windowMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Batch committed;
+        synchronized (lock) {
+            committed = pending;
+            pending = null;
+        }
+        boolean result = false;
+        try {
+            result = commit(committed);
+        } finally {
+            synchronized (lock) {
+                committed.result = result;
+                committed.done = true;
+                committing = false;
+                lock.notifyAll();
+            }
+        }
+        return result;
+    }
+
+    private boolean commit(Batch batch) {
+        boolean result = true;
+        if (batch.clear) {
+            result = storage.deleteAll();
+        }
+        Map<String, Object> puts = new HashMap<>();
+        List<String> deletes = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : batch.operations.entrySet()) {
+            if (entry.getValue() == DELETED) {
+                deletes.add(entry.getKey());
+            } else {
+                puts.put(entry.getKey(), entry.getValue());
+            }
+        }
+        // 同一批次中每个键只保留最后一次写入，整个批次一次提交
+        if (!puts.isEmpty() || !deletes.isEmpty()) {
+            result &= storage.writeBatch(puts, deletes);
+        }
+        return result;
+    }
+
+    private static final class Batch {
+        final Map<String, Object> operations = new LinkedHashMap<>();
+        boolean clear;
+        boolean done;
+        boolean result;
+    }
+}
@@ -2,7 +2,13 @@ package top.jessi.kv.storage;
 
 import android.content.Context;
 
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * Android 安全、简单的键值存储工具类。
@@ -15,6 +21,9 @@ public final class KV {
 
     static KvFacade sKvFacade = new KvFacade.EmptyKvFacade();
 
+    /** 通过 {@link #open(String, KvBuilder)} 打开的实例 */
+    private static final Map<String, KvStore> sStores = new HashMap<>();
+
     /**
      * 初始化 KV（无密码保护）。
      *
@@ -22,6 +31,10 @@ public final class KV {
      */
     public static KvBuilder init(Context context) {
         KvUtils.checkNull("Context", context);
+        // 重新初始化时等待旧实例的异步写入完成并释放其线程池
+        if (sKvFacade instanceof DefaultKvFacade) {
+            sKvFacade.destroy();
+        }
         sKvFacade = null;
         return new KvBuilder(context);
     }
@@ -30,6 +43,43 @@ public final class KV {
         sKvFacade = new DefaultKvFacade(kvBuilder);
     }
 
+    /**
+     * 打开一个独立命名空间的存储实例，与默认存储及其它实例互不影响。
+     * 同一名称已打开时直接返回已有实例，忽略传入的 builder。
+     *
+     * <p>builder 未设置存储时使用名为 {@code KVSP_名称} 的 SharedPreferences；流式数据保存在
+     * {@code kv_streams_名称} 目录下。使用 MMKV 时请为每个名称传入
+     * {@code new MMKVStorage(context, rootDir, 名称)}，各自使用独立的映射文件。</p>
+     *
+     * <pre>
+     * KvStore feed = KV.open("feed", new KvBuilder(context).setCacheMaxEntries(200));
+     * </pre>
+     *
+     * @param name    命名空间名称，作为文件名的一部分，只应包含字母、数字、下划线等字符
+     * @param builder 该实例的配置
+     * @return 存储实例
+     */
+    public static KvStore open(String name, KvBuilder builder) {
+        KvUtils.checkNullOrEmpty("Name", name);
+        KvUtils.checkNull("Builder", builder);
+        synchronized (sStores) {
+            KvStore store = sStores.get(name);
+            if (store == null) {
+                store = new KvStore(name, new DefaultKvFacade(builder.setName(name)));
+                sStores.put(name, store);
+            }
+            return store;
+        }
+    }
+
+    static void close(KvStore store) {
+        synchronized (sStores) {
+            if (sStores.get(store.getName()) == store) {
+                sStores.remove(store.getName());
+            }
+        }
+    }
+
     /**
      * 保存任意类型的数据，包括集合、基本类型和自定义对象。
      *
@@ -41,6 +91,31 @@ public final class KV {
         return sKvFacade.put(key, value);
     }
 
+    /**
+     * 批量保存数据，所有值先完成转换和加密，再一次性提交到存储。
+     * 值为 null 的键将被删除。任一值编码失败时不会写入任何数据。
+     *
+     * @param entries 待保存的键值对
+     * @return 全部保存成功返回 true
+     */
+    public static boolean putAll(Map<String, ?> entries) {
+        return sKvFacade.putAll(entries);
+    }
+
+    /**
+     * 开始一个事务，收集多个写入和删除，调用 {@link KvTransaction#commit()} 时一次原子提交，
+     * 读取方不会看到只完成一部分的更新。
+     *
+     * <pre>
+     * KV.edit().put("user.name", name).put("user.age", age).delete("user.token").commit();
+     * </pre>
+     *
+     * @return 事务
+     */
+    public static KvTransaction edit() {
+        return sKvFacade.edit();
+    }
+
     /**
      * 根据给定的键获取原始数据及其原始类型。
      * 注意：由于 KV 使用序列化机制，此操作不保证完全正确。
@@ -65,6 +140,73 @@ public final class KV {
         return sKvFacade.get(key, defaultValue);
     }
 
+    /**
+     * 按指定类型获取数据。由调用方提供类型，读取时无需解析存储中记录的类名。
+     *
+     * @param key  用于获取持久化数据的键
+     * @param type 数据的类型
+     * @return 已保存的对象，不存在或无法按该类型解码时返回 null
+     */
+    public static <T> T getAs(String key, Class<T> type) {
+        return sKvFacade.getAs(key, (Type) type);
+    }
+
+    /**
+     * 按指定的泛型类型获取数据，例如 {@code new TypeToken<List<User>>() {}.getType()}。
+     * 由调用方提供类型，读取时无需解析存储中记录的类名。
+     *
+     * @param key  用于获取持久化数据的键
+     * @param type 数据的类型
+     * @return 已保存的对象，不存在或无法按该类型解码时返回 null
+     */
+    public static <T> T getAs(String key, Type type) {
+        return sKvFacade.getAs(key, type);
+    }
+
+    /**
+     * 获取 int 类型的数据，返回基本类型，读取时不经过 Gson。
+     *
+     * @param key          用于获取已保存数据的键
+     * @param defaultValue 不存在或类型不符时返回的默认值
+     * @return 已保存的值
+     */
+    public static int getInt(String key, int defaultValue) {
+        return sKvFacade.getInt(key, defaultValue);
+    }
+
+    /**
+     * 获取 long 类型的数据，返回基本类型，读取时不经过 Gson。
+     *
+     * @param key          用于获取已保存数据的键
+     * @param defaultValue 不存在或类型不符时返回的默认值
+     * @return 已保存的值
+     */
+    public static long getLong(String key, long defaultValue) {
+        return sKvFacade.getLong(key, defaultValue);
+    }
+
+    /**
+     * 获取 boolean 类型的数据，返回基本类型，读取时不经过 Gson。
+     *
+     * @param key          用于获取已保存数据的键
+     * @param defaultValue 不存在或类型不符时返回的默认值
+     * @return 已保存的值
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        return sKvFacade.getBoolean(key, defaultValue);
+    }
+
+    /**
+     * 获取 double 类型的数据，返回基本类型，读取时不经过 Gson。
+     *
+     * @param key          用于获取已保存数据的键
+     * @param defaultValue 不存在或类型不符时返回的默认值
+     * @return 已保存的值
+     */
+    public static double getDouble(String key, double defaultValue) {
+        return sKvFacade.getDouble(key, defaultValue);
+    }
+
     /**
      * 获取存储中的所有数据
      *
@@ -75,6 +217,16 @@ public final class KV {
         return sKvFacade.getAll();
     }
 
+    /**
+     * 批量获取数据，只读取一次存储。不存在或解码失败的键不会出现在结果中。
+     *
+     * @param keys 待获取的键
+     * @return 以Map的形式返回
+     */
+    public static <T> Map<String, T> getAll(Collection<String> keys) {
+        return sKvFacade.getAll(keys);
+    }
+
     /**
      * 获取已保存数据的数量，每个键计为 1。
      *
@@ -84,6 +236,28 @@ public final class KV {
         return sKvFacade.count();
     }
 
+    /**
+     * 逐条遍历存储中的所有数据，内存中最多只保留一批数据，值在调用 {@link Map.Entry#getValue()} 时才解码。
+     * 解码失败的值返回 null 并通知 {@link DecodeFailureListener}。使用完毕后需关闭返回的迭代器。
+     *
+     * @param <T> 类型
+     * @return 迭代器
+     */
+    public static <T> KvIterator<T> scan() {
+        return sKvFacade.scan(Storage.DEFAULT_SCAN_BATCH_SIZE);
+    }
+
+    /**
+     * 同 {@link #scan()}，可指定每批从存储读取的条数。
+     *
+     * @param batchSize 每批读取的条数
+     * @param <T>       类型
+     * @return 迭代器
+     */
+    public static <T> KvIterator<T> scan(int batchSize) {
+        return sKvFacade.scan(batchSize);
+    }
+
     /**
      * 清空存储。注意：加密相关数据（如盐键等）不会被删除。
      * 如需删除加密信息，请使用 resetCrypto 方法。
@@ -94,6 +268,16 @@ public final class KV {
         return sKvFacade.deleteAll();
     }
 
+    /**
+     * 批量移除指定的键值对，一次性提交到存储。
+     *
+     * @param keys 待删除的键
+     * @return 删除成功返回 true
+     */
+    public static boolean deleteAll(Collection<String> keys) {
+        return sKvFacade.deleteAll(keys);
+    }
+
     /**
      * 从存储中移除指定的键值对。
      *
@@ -114,6 +298,122 @@ public final class KV {
         return sKvFacade.contains(key);
     }
 
+    /**
+     * 按字典序获取以 prefix 开头的键名，不读取和解码值，耗时只与匹配的键数量相关。
+     * 存储不支持前缀查询时，第一次调用会遍历一次存储建立内存索引。
+     *
+     * @param prefix 键名前缀，空字符串表示全部键名
+     * @return 匹配的键名
+     */
+    public static List<String> keys(String prefix) {
+        return sKvFacade.keys(prefix);
+    }
+
+    /**
+     * 获取所有以 prefix 开头的数据，只读取和解码匹配的条目。
+     *
+     * @param prefix 键名前缀
+     * @param <T>    类型
+     * @return 以Map的形式返回
+     */
+    public static <T> Map<String, T> getByPrefix(String prefix) {
+        return sKvFacade.getByPrefix(prefix);
+    }
+
+    /**
+     * 删除所有以 prefix 开头的数据，一次批量删除。
+     *
+     * @param prefix 键名前缀
+     * @return 全部删除成功返回 true
+     */
+    public static boolean deleteByPrefix(String prefix) {
+        return sKvFacade.deleteByPrefix(prefix);
+    }
+
+    /**
+     * 在后台线程中保存数据。同一个键的异步操作按调用顺序执行，不同键之间并行执行。
+     * 注意：同步的 get 不会等待尚未完成的异步写入，需要时请先调用 {@link #flush()}。
+     *
+     * @param key   用于区分数据的键
+     * @param value 待加密和持久化的数据
+     * @return 结果与 {@link #put(String, Object)} 相同的 Future
+     */
+    public static <T> Future<Boolean> putAsync(String key, T value) {
+        return sKvFacade.putAsync(key, value);
+    }
+
+    /**
+     * 在后台线程中获取数据，保证能读到此前对同一个键提交的异步写入。
+     *
+     * @param key 用于获取持久化数据的键
+     * @return 结果与 {@link #get(String)} 相同的 Future
+     */
+    public static <T> Future<T> getAsync(String key) {
+        return sKvFacade.getAsync(key);
+    }
+
+    /**
+     * 在后台线程中获取数据，完成后在该后台线程中回调结果。
+     *
+     * @param key      用于获取持久化数据的键
+     * @param callback 结果回调
+     * @return 结果与 {@link #get(String)} 相同的 Future
+     */
+    public static <T> Future<T> getAsync(String key, KvCallback<T> callback) {
+        return sKvFacade.getAsync(key, callback);
+    }
+
+    /**
+     * 在后台线程中删除数据，与同一个键的其他异步操作保持顺序。
+     *
+     * @param key 用于从存储中移除相关数据的键
+     * @return 结果与 {@link #delete(String)} 相同的 Future
+     */
+    public static Future<Boolean> deleteAsync(String key) {
+        return sKvFacade.deleteAsync(key);
+    }
+
+    /**
+     * 阻塞直到此前提交的所有异步写入（putAsync、deleteAsync）都已写入存储。
+     * 请勿在主线程中调用。
+     */
+    public static void flush() {
+        sKvFacade.flush();
+    }
+
+    /**
+     * 以流的方式保存大数据（如图片缓存、导出的日志），数据按固定大小分块加密写入，不会一次性读入内存。
+     * 流式数据与普通键值分开保存，不能通过 {@link #get(String)} 读取，也不计入 {@link #count()}。
+     * 本方法不会关闭输入流，请勿在主线程中调用。
+     *
+     * @param key   用于保存数据的键
+     * @param input 数据来源
+     * @return 全部写入成功返回 true，失败时不会覆盖已有数据
+     */
+    public static boolean putStream(String key, InputStream input) {
+        return sKvFacade.putStream(key, input);
+    }
+
+    /**
+     * 获取通过 {@link #putStream(String, InputStream)} 保存的数据，读取时逐块解密。使用完毕后需关闭返回的流。
+     *
+     * @param key 用于获取数据的键
+     * @return 输入流，数据不存在或无法读取时返回 null
+     */
+    public static InputStream getStream(String key) {
+        return sKvFacade.getStream(key);
+    }
+
+    /**
+     * 删除通过 {@link #putStream(String, InputStream)} 保存的数据。
+     *
+     * @param key 用于删除数据的键
+     * @return 删除成功或数据不存在时返回 true
+     */
+    public static boolean deleteStream(String key) {
+        return sKvFacade.deleteStream(key);
+    }
+
     /**
      * 验证 KV 是否已正确初始化并构建完成。
      *
@@ -127,4 +427,22 @@ public final class KV {
         sKvFacade.destroy();
     }
 
+    /**
+     * 按系统内存级别裁剪解码缓存，可在 Application 或 Activity 的 onTrimMemory 中直接调用。
+     *
+     * @param level {@link android.content.ComponentCallbacks2} 中定义的内存级别
+     */
+    public static void trimMemory(int level) {
+        sKvFacade.trimMemory(level);
+    }
+
+    /**
+     * 获取解码缓存的命中、未命中等统计信息，未启用缓存时各项均为 0。
+     *
+     * @return 统计快照
+     */
+    public static CacheStats getCacheStats() {
+        return sKvFacade.getCacheStats();
+    }
+
 }
@@ -0,0 +1,109 @@
+package top.jessi.kv.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 有序的内存键索引，用于前缀查询，查询耗时只与匹配的键数量相关。
+ *
+ * <p>索引在第一次查询时通过 {@link Storage#scan()} 建立，之后由 {@link DefaultKvFacade} 在每次写入存储后同步更新。
+ * 更新与建立在同一把锁下进行，且总是发生在存储写入之后，建立期间的并发写入不会丢失。
+ * 写入失败时无法确定存储的实际状态，此时丢弃索引，下次查询重新建立。</p>
+ */
+final class KeyIndex {
+
+    private final Storage storage;
+    private final Object lock = new Object();
+    private volatile ConcurrentSkipListSet<String> keys;
+
+    KeyIndex(Storage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * 按字典序返回以 prefix 开头的键名，不包含类型编号表。
+     */
+    List<String> keys(String prefix) {
+        List<String> result = new ArrayList<>();
+        for (String key : index().tailSet(prefix)) {
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            if (!TypeTable.isReserved(key)) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    void onPut(String key, boolean success) {
+        synchronized (lock) {
+            if (keys != null) {
+                if (success) {
+                    keys.add(key);
+                } else {
+                    keys = null;
+                }
+            }
+        }
+    }
+
+    void onPutAll(Collection<String> puts, boolean success) {
+        synchronized (lock) {
+            if (keys != null) {
+                if (success) {
+                    keys.addAll(puts);
+                } else {
+                    keys = null;
+                }
+            }
+        }
+    }
+
+    void onDelete(Collection<String> deletes, boolean success) {
+        synchronized (lock) {
+            if (keys != null) {
+                if (success) {
+                    keys.removeAll(deletes);
+                } else {
+                    keys = null;
+                }
+            }
+        }
+    }
+
+    void onDeleteAll(boolean success) {
+        synchronized (lock) {
+            if (keys != null) {
+                if (success) {
+                    keys.clear();
+                } else {
+                    keys = null;
+                }
+            }
+        }
+    }
+
+    private ConcurrentSkipListSet<String> index() {
+        ConcurrentSkipListSet<String> current = keys;
+        if (current != null) {
+            return current;
+        }
+        synchronized (lock) {
+            if (keys == null) {
+                ConcurrentSkipListSet<String> loaded = new ConcurrentSkipListSet<>();
+                try (KvIterator<Object> iterator = storage.scan()) {
+                    while (iterator.hasNext()) {
+                        Map.Entry<String, Object> entry = iterator.next();
+                        loaded.add(entry.getKey());
+                    }
+                }
+                keys = loaded;
+            }
+            return keys;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package top.jessi.kv.storage;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 基于键名快照按批读取值的 {@link KvIterator}。
+ */
+final class KeyKvIterator<T> implements KvIterator<T> {
+
+    private final String[] keys;
+    private final Storage storage;
+    private final int batchSize;
+    /** 下一批的起始位置 */
+    private int offset;
+    private String[] batchKeys = new String[0];
+    private Map<String, T> batch;
+    private int position;
+    private Map.Entry<String, T> next;
+
+    KeyKvIterator(String[] keys, Storage storage, int batchSize) {
+        this.keys = keys == null ? new String[0] : keys;
+        this.storage = storage;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            if (position >= batchKeys.length) {
+                if (offset >= keys.length) {
+                    return false;
+                }
+                int end = Math.min(keys.length, offset + batchSize);
+                batchKeys = Arrays.copyOfRange(keys, offset, end);
+                batch = storage.getAll(Arrays.asList(batchKeys));
+                offset = end;
+                position = 0;
+            }
+            String key = batchKeys[position++];
+            T value = batch.get(key);
+            if (value != null) {
+                next = new AbstractMap.SimpleImmutableEntry<>(key, value);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Map.Entry<String, T> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Map.Entry<String, T> result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void close() {
+        offset = keys.length;
+        batchKeys = new String[0];
+        batch = null;
+        next = null;
+    }
+}
@@ -0,0 +1,205 @@
+package top.jessi.kv.storage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按键串行的执行器：同一个键的任务按提交顺序依次执行，不同键的任务在底层线程池中并行执行。
+ */
+final class KeyedExecutor {
+
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    private final Executor customExecutor;
+    private ExecutorService defaultExecutor;
+    /** 每个键当前排队中的任务，队列为空时移除，guarded by this */
+    private final Map<String, SerialQueue> queues = new HashMap<>();
+    private final Set<Future<?>> pendingWrites = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /**
+     * @param executor 执行任务的线程池，为 null 时在首次使用时创建默认线程池
+     */
+    KeyedExecutor(Executor executor) {
+        this.customExecutor = executor;
+    }
+
+    /**
+     * 提交一个与键关联的任务。
+     *
+     * @param key   任务关联的键，同一个键的任务串行执行
+     * @param task  任务
+     * @param write 是否为写操作，写操作会被 {@link #flush()} 等待
+     * @return 任务的 Future
+     */
+    <T> Future<T> submit(String key, Callable<T> task, boolean write) {
+        FutureTask<T> future = new FutureTask<T>(task) {
+            @Override
+            protected void done() {
+                pendingWrites.remove(this);
+            }
+        };
+        if (write) {
+            pendingWrites.add(future);
+        }
+        SerialQueue start = null;
+        synchronized (this) {
+            SerialQueue queue = queues.get(key);
+            if (queue == null) {
+                queue = new SerialQueue(key);
+                queues.put(key, queue);
+            }
+            queue.tasks.add(future);
+            if (!queue.active) {
+                queue.active = true;
+                start = queue;
+            }
+        }
+        // 在锁外调度，直接执行的 Executor 不会让任务持有锁运行
+        if (start != null) {
+            try {
+                execute(start);
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    start.cancelAll();
+                }
+                throw e;
+            }
+        }
+        return future;
+    }
+
+    /**
+     * 阻塞直到调用时所有已提交的写操作执行完毕。
+     */
+    void flush() {
+        List<Future<?>> snapshot = new ArrayList<>(pendingWrites);
+        for (Future<?> future : snapshot) {
+            try {
+                future.get();
+            } catch (ExecutionException ignored) {
+                // 写操作失败同样视为已完成
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 关闭默认线程池，外部传入的线程池由调用方自行管理。
+     */
+    synchronized void shutdown() {
+        if (defaultExecutor != null) {
+            defaultExecutor.shutdown();
+            defaultExecutor = null;
+        }
+    }
+
+    /**
+     * 调度队列执行下一个任务，调用方不能持有本对象的锁。
+     */
+    private void execute(SerialQueue queue) {
+        executor().execute(queue);
+    }
+
+    private synchronized Executor executor() {
+        if (customExecutor != null) {
+            return customExecutor;
+        }
+        if (defaultExecutor == null) {
+            defaultExecutor = createDefaultExecutor();
+        }
+        return defaultExecutor;
+    }
+
+    private static ExecutorService createDefaultExecutor() {
+        int threads = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "KV-Async-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 单个键的任务队列，每次只执行一个任务，执行完后再调度下一个，避免长时间占用线程。
+     */
+    private final class SerialQueue implements Runnable {
+        final String key;
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        boolean active;
+
+        SerialQueue(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            Runnable task;
+            synchronized (KeyedExecutor.this) {
+                task = tasks.poll();
+            }
+            try {
+                if (task != null) {
+                    task.run();
+                }
+            } finally {
+                boolean next;
+                synchronized (KeyedExecutor.this) {
+                    next = !tasks.isEmpty();
+                    if (!next) {
+                        active = false;
+                        queues.remove(key);
+                    }
+                }
+                if (next) {
+                    try {
+                        execute(this);
+                    } catch (RejectedExecutionException e) {
+                        synchronized (KeyedExecutor.this) {
+                            cancelAll();
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * 线程池拒绝执行时取消剩余任务，guarded by KeyedExecutor.this
+         */
+        void cancelAll() {
+            for (Runnable task : tasks) {
+                ((Future<?>) task).cancel(false);
+            }
+            tasks.clear();
+            active = false;
+            queues.remove(key);
+        }
+    }
+}
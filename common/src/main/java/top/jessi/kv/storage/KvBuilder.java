@@ -4,23 +4,57 @@ import android.content.Context;
 
 import com.google.gson.Gson;
 
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
 public class KvBuilder {
 
+    /** 默认的压缩阈值（字符数） */
+    private static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+    /** 流式数据的保存目录名 */
+    private static final String STREAM_DIRECTORY = "kv_streams";
+
     private final Context context;
+    /** 由 {@link KV#open(String, KvBuilder)} 设置的命名空间名称，默认存储为 null */
+    private String name;
     private Storage cryptoStorage;
     private Converter converter;
     private Parser parser;
     private Encryption encryption;
     private Serializer serializer;
     private LogInterceptor logInterceptor;
+    private int cacheMaxEntries;
+    private long cacheMaxBytes;
+    private Executor executor;
+    private int parallelDecodeThreshold;
+    private DecodeFailureListener decodeFailureListener;
+    private TypeTable typeTable;
+    private final TreeMap<Integer, Encryption> schemes = new TreeMap<>();
+    private final Map<String, Integer> encryptionRules = new LinkedHashMap<>();
+    private EncryptionPolicy encryptionPolicy;
+    private Codec codec;
+    private Durability durability;
+    private long groupCommitWindowMillis;
+    /** 应用了持久化方式的存储，由 {@link #getStorage()} 创建，不覆盖 {@link #setStorage(Storage)} 设置的值 */
+    private Storage storage;
+    private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
 
     public KvBuilder(Context context) {
         KvUtils.checkNull("Context", context);
         this.context = context.getApplicationContext();
     }
 
+    KvBuilder setName(String name) {
+        this.name = name;
+        return this;
+    }
+
     public KvBuilder setStorage(Storage storage) {
         this.cryptoStorage = storage;
+        this.storage = null;
         return this;
     }
 
@@ -49,6 +83,153 @@ public class KvBuilder {
         return this;
     }
 
+    /**
+     * 注册一个可按键选择的加密方案，配合 {@link #setEncryptionPolicy(EncryptionPolicy)}
+     * 或 {@link #addEncryptionRule(String, int)} 使用。
+     *
+     * <p>方案编号会写入值的头部，已经使用过的编号不应再指向其它加密实现，否则已有数据将无法解密。
+     * 与默认方案不同，注册的方案初始化失败时不会退回到明文，构建时直接抛出异常。</p>
+     *
+     * @param schemeId   方案编号，必须大于 0，0 为 {@link #setEncryption(Encryption)} 设置的默认方案
+     * @param encryption 加密实现，例如对不敏感的键使用 {@link NoEncryption}
+     */
+    public KvBuilder addEncryption(int schemeId, Encryption encryption) {
+        if (schemeId <= EncryptionPolicy.DEFAULT_SCHEME) {
+            throw new IllegalArgumentException("Scheme id should be greater than 0");
+        }
+        KvUtils.checkNull("Encryption", encryption);
+        schemes.put(schemeId, encryption);
+        return this;
+    }
+
+    /**
+     * 设置按键选择加密方案的策略，设置后 {@link #addEncryptionRule(String, int)} 添加的规则不再生效。
+     * 方案编号记录在内置序列化格式中，不能与 {@link #setSerializer(Serializer)} 设置的自定义实现同时使用。
+     *
+     * @param policy 加密策略
+     */
+    public KvBuilder setEncryptionPolicy(EncryptionPolicy policy) {
+        this.encryptionPolicy = policy;
+        return this;
+    }
+
+    /**
+     * 添加按键名前缀选择加密方案的规则，规则按添加顺序匹配，都不匹配时使用默认方案。
+     * 与 {@link #setEncryptionPolicy(EncryptionPolicy)} 一样不能与自定义序列化实现同时使用。
+     *
+     * @param keyPrefix 键名前缀
+     * @param schemeId  已注册的方案编号
+     */
+    public KvBuilder addEncryptionRule(String keyPrefix, int schemeId) {
+        KvUtils.checkNull("Key prefix", keyPrefix);
+        encryptionRules.put(keyPrefix, schemeId);
+        return this;
+    }
+
+    /**
+     * 设置写入的持久化方式，所有内置存储均支持，未设置时各存储保持原有行为。
+     *
+     * @param durability 持久化方式
+     * @see #setGroupCommitWindow(long)
+     */
+    public KvBuilder setDurability(Durability durability) {
+        this.durability = durability;
+        this.storage = null;
+        return this;
+    }
+
+    /**
+     * 设置 {@link Durability#GROUP_COMMIT} 的合并窗口，默认为 0，即只合并上一次提交期间到达的写入。
+     *
+     * @param windowMillis 提交前等待其它写入加入的毫秒数
+     */
+    public KvBuilder setGroupCommitWindow(long windowMillis) {
+        this.groupCommitWindowMillis = windowMillis;
+        this.storage = null;
+        return this;
+    }
+
+    /**
+     * 启用值压缩，转换后的文本达到阈值时先压缩再加密，默认不启用。
+     * 压缩格式编号记录在内置序列化格式中，使用 {@link #setSerializer(Serializer)} 设置的自定义实现时不压缩。
+     *
+     * @param codec 压缩实现，例如 {@link DeflateCodec}；自定义实现不能使用 {@link DeflateCodec#ID}
+     * @see #setCompressionThreshold(int)
+     */
+    public KvBuilder setCompression(Codec codec) {
+        if (codec != null && codec.getId() <= 0) {
+            throw new IllegalArgumentException("Codec id should be greater than 0");
+        }
+        // 已有的 Deflate 数据按编号解压，占用该编号会使其交给自定义实现而无法解压
+        if (codec != null && codec.getId() == DeflateCodec.ID && !(codec instanceof DeflateCodec)) {
+            throw new IllegalArgumentException("Codec id " + DeflateCodec.ID + " is reserved for DeflateCodec");
+        }
+        this.codec = codec;
+        return this;
+    }
+
+    /**
+     * 设置压缩阈值，转换后的文本长度小于阈值时不压缩，默认 1024 个字符。
+     *
+     * @param threshold 触发压缩的最小字符数
+     */
+    public KvBuilder setCompressionThreshold(int threshold) {
+        this.compressionThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * 启用解码缓存并按条目数限制其容量，默认不启用。
+     *
+     * @param maxEntries 最多缓存的条目数
+     */
+    public KvBuilder setCacheMaxEntries(int maxEntries) {
+        this.cacheMaxEntries = maxEntries;
+        return this;
+    }
+
+    /**
+     * 启用解码缓存并按估算字节数限制其容量，默认不启用。
+     *
+     * @param maxBytes 缓存最多占用的估算字节数
+     */
+    public KvBuilder setCacheMaxBytes(long maxBytes) {
+        this.cacheMaxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * 设置异步操作（putAsync、getAsync、deleteAsync）使用的线程池。
+     * 不设置时在首次异步调用时创建一个小型的守护线程池，并在 destroy 时关闭。
+     *
+     * @param executor 线程池，由调用方负责关闭
+     */
+    public KvBuilder setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * 设置 getAll 并行解码的阈值。条目数达到阈值时，反序列化、解密和转换将在 ForkJoin 线程池中并行执行。
+     * 默认不启用并行解码。
+     *
+     * @param threshold 触发并行解码的最小条目数，小于等于 0 表示不启用
+     */
+    public KvBuilder setParallelDecodeThreshold(int threshold) {
+        this.parallelDecodeThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * 设置解码失败监听器，用于获知哪些键的数据无法被读取。
+     *
+     * @param listener 监听器
+     */
+    public KvBuilder setDecodeFailureListener(DecodeFailureListener listener) {
+        this.decodeFailureListener = listener;
+        return this;
+    }
+
     LogInterceptor getLogInterceptor() {
         if (logInterceptor == null) {
             logInterceptor = message -> {
@@ -59,10 +240,29 @@ public class KvBuilder {
     }
 
     Storage getStorage() {
-        if (cryptoStorage == null) {
-            cryptoStorage = new SharedPreferencesStorage(context);
+        if (storage == null) {
+            storage = buildStorage();
         }
-        return cryptoStorage;
+        return storage;
+    }
+
+    /**
+     * 创建存储并应用持久化方式，同一份配置只执行一次，门面和类型编号表共用其结果。
+     */
+    private Storage buildStorage() {
+        Storage result = cryptoStorage;
+        if (result == null) {
+            result = name == null ? new SharedPreferencesStorage(context)
+                    : new SharedPreferencesStorage(context, "KVSP_" + name);
+        }
+        if (durability == Durability.GROUP_COMMIT) {
+            result.setDurability(Durability.SYNC);
+            return new GroupCommitStorage(result, groupCommitWindowMillis);
+        }
+        if (durability != null) {
+            result.setDurability(durability);
+        }
+        return result;
     }
 
     Converter getConverter() {
@@ -89,13 +289,89 @@ public class KvBuilder {
         return encryption;
     }
 
+    /**
+     * 获取所有加密方案，下标即方案编号，未注册的编号为 null。
+     *
+     * @throws IllegalStateException 注册的方案初始化失败时抛出，避免以该方案的编号写入明文
+     */
+    Encryption[] getEncryptionSchemes() {
+        int size = schemes.isEmpty() ? 1 : schemes.lastKey() + 1;
+        Encryption[] result = new Encryption[size];
+        result[EncryptionPolicy.DEFAULT_SCHEME] = getEncryption();
+        for (Map.Entry<Integer, Encryption> entry : schemes.entrySet()) {
+            Encryption encryption = entry.getValue();
+            if (!encryption.init()) {
+                throw new IllegalStateException("Encryption scheme " + entry.getKey() + " ("
+                        + encryption.getClass().getSimpleName() + ") failed to initialize");
+            }
+            result[entry.getKey()] = encryption;
+        }
+        return result;
+    }
+
+    EncryptionPolicy getEncryptionPolicy() {
+        if (encryptionPolicy == null && !encryptionRules.isEmpty()) {
+            Map<String, Integer> rules = new LinkedHashMap<>(encryptionRules);
+            encryptionPolicy = key -> {
+                for (Map.Entry<String, Integer> rule : rules.entrySet()) {
+                    if (key.startsWith(rule.getKey())) {
+                        return rule.getValue();
+                    }
+                }
+                return EncryptionPolicy.DEFAULT_SCHEME;
+            };
+        }
+        return encryptionPolicy;
+    }
+
+    /**
+     * 流式数据所在的目录，位于应用私有目录下，命名空间实例使用各自的目录。
+     */
+    File getStreamDirectory() {
+        return new File(context.getFilesDir(), name == null ? STREAM_DIRECTORY : STREAM_DIRECTORY + "_" + name);
+    }
+
+    Codec getCodec() {
+        return codec;
+    }
+
+    int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
     Serializer getSerializer() {
         if (serializer == null) {
-            serializer = new KvSerializer(getLogInterceptor());
+            serializer = new KvSerializer(getLogInterceptor(), getTypeTable());
         }
         return serializer;
     }
 
+    int getParallelDecodeThreshold() {
+        return parallelDecodeThreshold;
+    }
+
+    DecodeFailureListener getDecodeFailureListener() {
+        return decodeFailureListener;
+    }
+
+    TypeTable getTypeTable() {
+        if (typeTable == null) {
+            typeTable = new TypeTable(getStorage(), getLogInterceptor());
+        }
+        return typeTable;
+    }
+
+    Executor getExecutor() {
+        return executor;
+    }
+
+    KvCache getCache() {
+        if (cacheMaxEntries <= 0 && cacheMaxBytes <= 0) {
+            return null;
+        }
+        return new KvCache(cacheMaxEntries, cacheMaxBytes);
+    }
+
     public void build() {
         KV.build(this);
     }
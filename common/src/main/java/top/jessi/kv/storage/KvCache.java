@@ -0,0 +1,143 @@
+package top.jessi.kv.storage;
+
+import android.content.ComponentCallbacks2;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 已解码对象的读穿透缓存，按 LRU 策略淘汰。
+ *
+ * <p>容量可以按条目数或估算字节数限制，两者同时设置时任一超限即淘汰最久未访问的条目。
+ * 缓存中保存的是解码后的对象引用，调用方不应修改 get 返回的可变对象（如 List、Map）。</p>
+ */
+final class KvCache {
+
+    /** 每个条目除值本身外的估算开销（键、链表节点、包装对象） */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes;
+    /** 每次失效时递增，用于丢弃失效前开始、失效后才写回的旧值 */
+    private long stamp;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param maxEntries 最大条目数，小于等于 0 表示不按条目数限制
+     * @param maxBytes   最大估算字节数，小于等于 0 表示不按字节数限制
+     */
+    KvCache(int maxEntries, long maxBytes) {
+        if (maxEntries <= 0 && maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache should be bounded by entries or bytes");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 估算一个解码值占用的内存，以其存储文本的长度为依据（UTF-16 每字符 2 字节）。
+     *
+     * @param key            键名
+     * @param serializedText 值在存储中的文本
+     * @return 估算字节数
+     */
+    static long estimate(String key, Object serialized) {
+        long size = serialized instanceof byte[] ? ((byte[]) serialized).length
+                : serialized == null ? 0 : 2L * serialized.toString().length();
+        return ENTRY_OVERHEAD + 2L * key.length() + size;
+    }
+
+    synchronized Object get(String key) {
+        Entry entry = map.get(key);
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.value;
+    }
+
+    /**
+     * 获取当前失效戳，读取存储前调用，写回缓存时传入 {@link #put}。
+     */
+    synchronized long stamp() {
+        return stamp;
+    }
+
+    /**
+     * 写入缓存。如果读取期间发生过失效，则放弃写入，避免缓存旧值。
+     */
+    synchronized void put(String key, Object value, long weight, long readStamp) {
+        if (value == null || readStamp != stamp) {
+            return;
+        }
+        Entry previous = map.put(key, new Entry(value, weight));
+        if (previous != null) {
+            bytes -= previous.weight;
+        }
+        bytes += weight;
+        trimTo(maxEntries, maxBytes);
+    }
+
+    synchronized void invalidate(String key) {
+        stamp++;
+        Entry previous = map.remove(key);
+        if (previous != null) {
+            bytes -= previous.weight;
+        }
+    }
+
+    synchronized void invalidateAll() {
+        stamp++;
+        map.clear();
+        bytes = 0;
+    }
+
+    /**
+     * 响应系统内存紧张回调，可直接在 {@code onTrimMemory} 中调用。
+     *
+     * @param level {@link ComponentCallbacks2} 中定义的内存级别
+     */
+    synchronized void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            map.clear();
+            bytes = 0;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            trimTo(map.size() / 2, bytes / 2);
+        }
+    }
+
+    synchronized CacheStats stats() {
+        return new CacheStats(hitCount, missCount, evictionCount, map.size(), bytes);
+    }
+
+    private void trimTo(int entryLimit, long byteLimit) {
+        Iterator<Map.Entry<String, Entry>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()
+                && ((entryLimit > 0 && map.size() > entryLimit) || (byteLimit > 0 && bytes > byteLimit)
+                || (entryLimit == 0 && byteLimit == 0))) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            bytes -= eldest.weight;
+            evictionCount++;
+        }
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long weight;
+
+        Entry(Object value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
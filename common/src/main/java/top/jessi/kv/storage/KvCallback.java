@@ -0,0 +1,18 @@
+package top.jessi.kv.storage;
+
+/**
+ * 异步操作的结果回调。
+ *
+ * <p>回调在执行操作的后台线程中触发，如需更新界面请自行切换到主线程。</p>
+ *
+ * @param <T> 结果类型
+ */
+public interface KvCallback<T> {
+
+    /**
+     * 操作完成时触发。
+     *
+     * @param result 操作结果
+     */
+    void onResult(T result);
+}
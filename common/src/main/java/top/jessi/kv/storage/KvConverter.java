@@ -2,12 +2,10 @@ package top.jessi.kv.storage;
 
 import com.google.gson.reflect.TypeToken;
 
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 /**
  * 编码/解码的具体实现。
@@ -31,6 +29,10 @@ final class KvConverter implements Converter {
         if (value == null) {
             return null;
         }
+        // 基本类型直接转为文本，不经过解析器
+        if (DataInfo.primitiveType(value) != 0) {
+            return value.toString();
+        }
         return parser.toJson(value);
     }
 
@@ -45,6 +47,8 @@ final class KvConverter implements Converter {
         Class<?> valueType = info.valueClazz;
 
         return switch (info.dataType) {
+            case DataInfo.TYPE_STRING, DataInfo.TYPE_INTEGER, DataInfo.TYPE_LONG, DataInfo.TYPE_BOOLEAN,
+                    DataInfo.TYPE_DOUBLE -> toPrimitive(value, info.dataType);
             case DataInfo.TYPE_OBJECT -> toObject(value, keyType);
             case DataInfo.TYPE_LIST -> toList(value, keyType);
             case DataInfo.TYPE_MAP -> toMap(value, keyType, valueType);
@@ -53,6 +57,33 @@ final class KvConverter implements Converter {
         };
     }
 
+    /**
+     * 按调用方指定的类型对值进行解码，无需存储中记录的类型信息，供 {@code KV.getAs} 使用。
+     *
+     * @param value 编码后的数据
+     * @param type  目标类型，可以是 Class 或带泛型参数的 Type
+     * @return 原始值
+     */
+    public <T> T fromString(String value, Type type) throws Exception {
+        if (value == null) {
+            return null;
+        }
+        KvUtils.checkNull("type", type);
+        return parser.fromJson(value, type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T toPrimitive(String text, char type) {
+        Object value = switch (type) {
+            case DataInfo.TYPE_INTEGER -> Integer.valueOf(text);
+            case DataInfo.TYPE_LONG -> Long.valueOf(text);
+            case DataInfo.TYPE_BOOLEAN -> Boolean.valueOf(text);
+            case DataInfo.TYPE_DOUBLE -> Double.valueOf(text);
+            default -> text;
+        };
+        return (T) value;
+    }
+
     private <T> T toObject(String json, Class<?> type) throws Exception {
         return parser.fromJson(json, type);
     }
@@ -62,54 +93,24 @@ final class KvConverter implements Converter {
         if (type == null) {
             return (T) new ArrayList<>();
         }
-        List<T> list = parser.fromJson(
-                json,
-                new TypeToken<List<T>>() {
-                }.getType()
-        );
-
-        int size = list.size();
-        for (int i = 0; i < size; i++) {
-            list.set(i, (T) parser.fromJson(parser.toJson(list.get(i)), type));
-        }
-        return (T) list;
+        // 直接按元素类型一次解析，无需先解析为 LinkedTreeMap 再逐个转换
+        return parser.fromJson(json, TypeToken.getParameterized(ArrayList.class, type).getType());
     }
 
     @SuppressWarnings("unchecked")
     private <T> T toSet(String json, Class<?> type) throws Exception {
-        Set<T> resultSet = new HashSet<>();
         if (type == null) {
-            return (T) resultSet;
-        }
-        Set<T> set = parser.fromJson(json, new TypeToken<Set<T>>() {
-        }.getType());
-
-        for (T t : set) {
-            String valueJson = parser.toJson(t);
-            T value = parser.fromJson(valueJson, type);
-            resultSet.add(value);
+            return (T) new HashSet<>();
         }
-        return (T) resultSet;
+        return parser.fromJson(json, TypeToken.getParameterized(HashSet.class, type).getType());
     }
 
     @SuppressWarnings("unchecked")
-    private <K, V, T> T toMap(String json, Class<?> keyType, Class<?> valueType) throws Exception {
-        Map<K, V> resultMap = new HashMap<>();
+    private <T> T toMap(String json, Class<?> keyType, Class<?> valueType) throws Exception {
         if (keyType == null || valueType == null) {
-            return (T) resultMap;
-        }
-        Map<K, V> map = parser.fromJson(json, new TypeToken<Map<K, V>>() {
-        }.getType());
-
-        for (Map.Entry<K, V> entry : map.entrySet()) {
-            String keyJson = parser.toJson(entry.getKey());
-            K k = parser.fromJson(keyJson, keyType);
-
-            String valueJson = parser.toJson(entry.getValue());
-            V v = parser.fromJson(valueJson, valueType);
-            resultMap.put(k, v);
+            return (T) new HashMap<>();
         }
-        return (T) resultMap;
+        return parser.fromJson(json, TypeToken.getParameterized(HashMap.class, keyType, valueType).getType());
     }
 
 }
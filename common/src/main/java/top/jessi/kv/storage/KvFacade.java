@@ -1,6 +1,11 @@
 package top.jessi.kv.storage;
 
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * KV 门面接口，定义了键值存储的核心操作。
@@ -10,24 +15,70 @@ public interface KvFacade {
 
     <T> boolean put(String key, T value);
 
+    boolean putAll(Map<String, ?> entries);
+
+    KvTransaction edit();
+
     <T> T get(String key);
 
     <T> T get(String key, T defaultValue);
 
+    <T> T getAs(String key, Type type);
+
+    int getInt(String key, int defaultValue);
+
+    long getLong(String key, long defaultValue);
+
+    boolean getBoolean(String key, boolean defaultValue);
+
+    double getDouble(String key, double defaultValue);
+
     <T> Map<String,T> getAll();
 
+    <T> Map<String, T> getAll(Collection<String> keys);
+
     long count();
 
+    <T> KvIterator<T> scan(int batchSize);
+
     boolean deleteAll();
 
+    boolean deleteAll(Collection<String> keys);
+
     boolean delete(String key);
 
     boolean contains(String key);
 
+    List<String> keys(String prefix);
+
+    <T> Map<String, T> getByPrefix(String prefix);
+
+    boolean deleteByPrefix(String prefix);
+
+    <T> Future<Boolean> putAsync(String key, T value);
+
+    <T> Future<T> getAsync(String key);
+
+    <T> Future<T> getAsync(String key, KvCallback<T> callback);
+
+    Future<Boolean> deleteAsync(String key);
+
+    void flush();
+
+    boolean putStream(String key, InputStream input);
+
+    InputStream getStream(String key);
+
+    boolean deleteStream(String key);
+
     boolean isBuilt();
 
     void destroy();
 
+    void trimMemory(int level);
+
+    CacheStats getCacheStats();
+
     class EmptyKvFacade implements KvFacade {
 
         @Override
@@ -36,6 +87,18 @@ public interface KvFacade {
             return false;
         }
 
+        @Override
+        public boolean putAll(Map<String, ?> entries) {
+            throwValidation();
+            return false;
+        }
+
+        @Override
+        public KvTransaction edit() {
+            throwValidation();
+            return null;
+        }
+
         @Override
         public <T> T get(String key) {
             throwValidation();
@@ -48,24 +111,72 @@ public interface KvFacade {
             return null;
         }
 
+        @Override
+        public <T> T getAs(String key, Type type) {
+            throwValidation();
+            return null;
+        }
+
+        @Override
+        public int getInt(String key, int defaultValue) {
+            throwValidation();
+            return 0;
+        }
+
+        @Override
+        public long getLong(String key, long defaultValue) {
+            throwValidation();
+            return 0;
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defaultValue) {
+            throwValidation();
+            return false;
+        }
+
+        @Override
+        public double getDouble(String key, double defaultValue) {
+            throwValidation();
+            return 0;
+        }
+
         @Override
         public <T> Map<String, T> getAll() {
             throwValidation();
             return null;
         }
 
+        @Override
+        public <T> Map<String, T> getAll(Collection<String> keys) {
+            throwValidation();
+            return null;
+        }
+
         @Override
         public long count() {
             throwValidation();
             return 0;
         }
 
+        @Override
+        public <T> KvIterator<T> scan(int batchSize) {
+            throwValidation();
+            return null;
+        }
+
         @Override
         public boolean deleteAll() {
             throwValidation();
             return false;
         }
 
+        @Override
+        public boolean deleteAll(Collection<String> keys) {
+            throwValidation();
+            return false;
+        }
+
         @Override
         public boolean delete(String key) {
             throwValidation();
@@ -78,6 +189,71 @@ public interface KvFacade {
             return false;
         }
 
+        @Override
+        public List<String> keys(String prefix) {
+            throwValidation();
+            return null;
+        }
+
+        @Override
+        public <T> Map<String, T> getByPrefix(String prefix) {
+            throwValidation();
+            return null;
+        }
+
+        @Override
+        public boolean deleteByPrefix(String prefix) {
+            throwValidation();
+            return false;
+        }
+
+        @Override
+        public <T> Future<Boolean> putAsync(String key, T value) {
+            throwValidation();
+            return null;
+        }
+
+        @Override
+        public <T> Future<T> getAsync(String key) {
+            throwValidation();
+            return null;
+        }
+
+        @Override
+        public <T> Future<T> getAsync(String key, KvCallback<T> callback) {
+            throwValidation();
+            return null;
+        }
+
+        @Override
+        public Future<Boolean> deleteAsync(String key) {
+            throwValidation();
+            return null;
+        }
+
+        @Override
+        public void flush() {
+            throwValidation();
+        }
+
+        @Override
+        public boolean putStream(String key, InputStream input) {
+            throwValidation();
+            return false;
+        }
+
+        @Override
+        public InputStream getStream(String key) {
+            throwValidation();
+            return null;
+        }
+
+        @Override
+        public boolean deleteStream(String key) {
+            throwValidation();
+            return false;
+        }
+
         @Override
         public boolean isBuilt() {
             return false;
@@ -88,6 +264,17 @@ public interface KvFacade {
             throwValidation();
         }
 
+        @Override
+        public void trimMemory(int level) {
+            throwValidation();
+        }
+
+        @Override
+        public CacheStats getCacheStats() {
+            throwValidation();
+            return null;
+        }
+
         private void throwValidation() {
             throw new IllegalStateException("KV is not built. " +
                     "Please call build() and wait the initialisation finishes.");
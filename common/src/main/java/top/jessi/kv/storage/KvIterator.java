@@ -0,0 +1,44 @@
+package top.jessi.kv.storage;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 可关闭的键值迭代器，用于逐条遍历存储而不一次性构建完整的 Map。
+ *
+ * <p>迭代器不是线程安全的，遍历期间的写入是否可见取决于具体存储。使用完毕后应调用 {@link #close()}，
+ * 推荐使用 try-with-resources。</p>
+ *
+ * @param <T> 值的类型
+ */
+public interface KvIterator<T> extends Iterator<Map.Entry<String, T>>, Closeable {
+
+    /**
+     * 释放迭代器持有的资源，不抛出受检异常。
+     */
+    @Override
+    void close();
+
+    /**
+     * 遍历一个已在内存中的 Map，适用于无法按批读取的存储。
+     *
+     * @param map 待遍历的数据，为 null 时视为空
+     */
+    static <T> KvIterator<T> of(Map<String, T> map) {
+        return new MapKvIterator<>(map);
+    }
+
+    /**
+     * 遍历键名快照，按批调用 {@link Storage#getAll(Collection)} 读取值，内存中最多只保留一批数据。
+     * 快照之后被删除的键会被跳过。
+     *
+     * @param keys      键名快照
+     * @param storage   读取值的存储
+     * @param batchSize 每批读取的条数
+     */
+    static <T> KvIterator<T> ofKeys(String[] keys, Storage storage, int batchSize) {
+        return new KeyKvIterator<>(keys, storage, batchSize);
+    }
+}
@@ -4,23 +4,80 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * 值头部的序列化实现，负责把数据类型与密文写在一起，并在读取时还原。
+ *
+ * <p>当前写入的紧凑格式（版本 2）：</p>
+ * <pre>
+ * '2' 类型标记 { 字段标记 十进制数字 } '@' 密文
+ * </pre>
+ * <p>字段标记 {@code k}、{@code v} 分别为元素（键）类型和值类型在 {@link TypeTable} 中的编号，
+ * {@code e} 为非默认的加密方案编号（见 {@link EncryptionPolicy}），默认方案不写入，
+ * {@code c} 为压缩格式编号（见 {@link Codec}），未压缩时不写入。
+ * 例如 {@code 21k3@...} 表示元素类型编号为 3 的 List，基本类型没有类型字段，如 {@code 2I@...}、{@code 2Ie1@...}。
+ * 读取时顺序扫描，不做字符串拆分；未知的小写字段标记会被跳过，便于以后追加字段。</p>
+ *
+ * <p>旧格式 {@code 类名#类名#类型V@密文} 依然可以读取，但不再写入。</p>
+ */
 class KvSerializer implements Serializer {
 
     private static final char DELIMITER = '@';
-    private static final String INFO_DELIMITER = "#";
+    private static final char INFO_DELIMITER = '#';
     private static final char NEW_VERSION = 'V';
+    /** 紧凑格式的版本标记，以数字开头，不会与以类名或 # 开头的旧格式混淆 */
+    private static final char COMPACT_VERSION = '2';
+    private static final char FIELD_KEY_TYPE = 'k';
+    private static final char FIELD_VALUE_TYPE = 'v';
+    private static final char FIELD_ENCRYPTION = 'e';
+    private static final char FIELD_CODEC = 'c';
 
     private final LogInterceptor logInterceptor;
+    private final TypeTable typeTable;
+    /** 类名到 Class 的缓存，避免每次读取旧格式都通过反射查找 */
+    private final Map<String, Class<?>> classCache = new ConcurrentHashMap<>();
 
-    KvSerializer(LogInterceptor logInterceptor) {
+    KvSerializer(LogInterceptor logInterceptor, TypeTable typeTable) {
         this.logInterceptor = logInterceptor;
+        this.typeTable = typeTable;
     }
 
     @Override
     public <T> String serialize(String cipherText, T originalGivenValue) {
-        KvUtils.checkNullOrEmpty("Cipher text", cipherText);
+        return serialize(cipherText, originalGivenValue, EncryptionPolicy.DEFAULT_SCHEME, 0);
+    }
+
+    @Override
+    public <T> String serialize(String cipherText, T originalGivenValue, int encryptionScheme, int codecId) {
+        KvUtils.checkNull("Value", originalGivenValue);
+        // 基本类型的空字符串密文也是合法的
+        if (DataInfo.primitiveType(originalGivenValue) != 0) {
+            KvUtils.checkNull("Cipher text", cipherText);
+        } else {
+            KvUtils.checkNullOrEmpty("Cipher text", cipherText);
+        }
+        return build(cipherText, originalGivenValue, encryptionScheme, codecId);
+    }
+
+    /**
+     * 只生成以分隔符结尾的序列化头，密文由调用方以字节形式拼接在后面。
+     */
+    <T> String serializeHeader(T originalGivenValue, int encryptionScheme, int codecId) {
         KvUtils.checkNull("Value", originalGivenValue);
+        return build("", originalGivenValue, encryptionScheme, codecId);
+    }
+
+    private <T> String build(String cipherText, T originalGivenValue, int encryptionScheme, int codecId) {
+        // 基本类型无需记录类名
+        char primitiveType = DataInfo.primitiveType(originalGivenValue);
+        if (primitiveType != 0) {
+            StringBuilder builder = new StringBuilder(cipherText.length() + 8)
+                    .append(COMPACT_VERSION)
+                    .append(primitiveType);
+            appendFields(builder, encryptionScheme, codecId);
+            return builder.append(DELIMITER).append(cipherText).toString();
+        }
 
         String keyClassName = "";
         String valueClassName = "";
@@ -54,44 +111,60 @@ class KvSerializer implements Serializer {
             dataType = DataInfo.TYPE_OBJECT;
             keyClassName = originalGivenValue.getClass().getName();
         }
-        return keyClassName + INFO_DELIMITER +
-                valueClassName + INFO_DELIMITER +
-                dataType + NEW_VERSION + DELIMITER +
-                cipherText;
+
+        int keyId = keyClassName.isEmpty() ? -1 : typeTable.intern(keyClassName);
+        int valueId = valueClassName.isEmpty() ? -1 : typeTable.intern(valueClassName);
+        if ((!keyClassName.isEmpty() && keyId < 0) || (!valueClassName.isEmpty() && valueId < 0)) {
+            if (encryptionScheme != EncryptionPolicy.DEFAULT_SCHEME || codecId != 0) {
+                // 旧格式无法记录加密方案和压缩格式，写入后将无法正确读取
+                logInterceptor.onLog("KVSerializer -> 编号表不可用，无法记录加密方案或压缩格式");
+                return null;
+            }
+            // 编号表无法持久化时退回到旧格式，保证数据可读
+            return keyClassName + INFO_DELIMITER +
+                    valueClassName + INFO_DELIMITER +
+                    dataType + NEW_VERSION + DELIMITER +
+                    cipherText;
+        }
+
+        StringBuilder builder = new StringBuilder(cipherText.length() + 16)
+                .append(COMPACT_VERSION)
+                .append(dataType);
+        if (keyId >= 0) {
+            builder.append(FIELD_KEY_TYPE).append(keyId);
+        }
+        if (valueId >= 0) {
+            builder.append(FIELD_VALUE_TYPE).append(valueId);
+        }
+        appendFields(builder, encryptionScheme, codecId);
+        return builder.append(DELIMITER).append(cipherText).toString();
     }
 
     @Override
     public DataInfo deserialize(String serializedText) {
-        String[] infos = serializedText.split(INFO_DELIMITER);
-
-        char type = infos[2].charAt(0);
-
-        // 如果是集合类型，无需创建类对象
-        Class<?> keyClazz = null;
-        String firstElement = infos[0];
-        if (firstElement != null && firstElement.length() != 0) {
-            try {
-                keyClazz = Class.forName(firstElement);
-            } catch (ClassNotFoundException e) {
-                logInterceptor.onLog("KVSerializer -> " + e.getMessage());
-            }
+        if (isCompact(serializedText)) {
+            return deserializeCompact(serializedText);
         }
 
-        Class<?> valueClazz = null;
-        String secondElement = infos[1];
-        if (secondElement != null && secondElement.length() != 0) {
-            try {
-                valueClazz = Class.forName(secondElement);
-            } catch (ClassNotFoundException e) {
-                logInterceptor.onLog("KVSerializer -> " + e.getMessage());
-            }
+        // 旧格式：类名#类名#类型V@密文，按分隔符位置截取，不做拆分
+        int first = serializedText.indexOf(INFO_DELIMITER);
+        int second = first == -1 ? -1 : serializedText.indexOf(INFO_DELIMITER, first + 1);
+        int delimiter = second == -1 ? -1 : serializedText.indexOf(DELIMITER, second + 1);
+        if (delimiter == -1) {
+            throw new IllegalArgumentException("文本中应包含分隔符");
         }
+        char type = serializedText.charAt(second + 1);
 
-        String cipherText = getCipherText(infos[infos.length - 1]);
+        // 如果是集合类型，无需创建类对象
+        Class<?> keyClazz = forName(serializedText.substring(0, first));
+        Class<?> valueClazz = forName(serializedText.substring(first + 1, second));
+
+        String cipherText = serializedText.substring(delimiter + 1);
         return new DataInfo(type, cipherText, keyClazz, valueClazz);
     }
 
-    private String getCipherText(String serializedText) {
+    @Override
+    public String getCipherText(String serializedText) {
         int index = serializedText.indexOf(DELIMITER);
         if (index == -1) {
             throw new IllegalArgumentException("文本中应包含分隔符");
@@ -99,4 +172,117 @@ class KvSerializer implements Serializer {
         return serializedText.substring(index + 1);
     }
 
+    @Override
+    public char getDataType(String serializedText) {
+        if (isCompact(serializedText)) {
+            return serializedText.charAt(1);
+        }
+        // 旧格式为 类名#类名#类型V@密文，类型标记位于分隔符前两位
+        int index = serializedText.indexOf(DELIMITER);
+        if (index < 2) {
+            throw new IllegalArgumentException("文本中应包含分隔符");
+        }
+        return serializedText.charAt(index - 2);
+    }
+
+    @Override
+    public int getEncryptionScheme(String serializedText) {
+        return findField(serializedText, FIELD_ENCRYPTION, EncryptionPolicy.DEFAULT_SCHEME);
+    }
+
+    @Override
+    public int getCodecId(String serializedText) {
+        return findField(serializedText, FIELD_CODEC, 0);
+    }
+
+    /**
+     * 在紧凑格式的头部中查找单个字段，旧格式或字段不存在时返回默认值。
+     */
+    private static int findField(String serializedText, char target, int defaultValue) {
+        if (!isCompact(serializedText)) {
+            return defaultValue;
+        }
+        int length = serializedText.length();
+        int index = 2;
+        while (index < length && serializedText.charAt(index) != DELIMITER) {
+            char field = serializedText.charAt(index++);
+            int number = 0;
+            while (index < length && isDigit(serializedText.charAt(index))) {
+                number = number * 10 + (serializedText.charAt(index++) - '0');
+            }
+            if (field == target) {
+                return number;
+            }
+        }
+        return defaultValue;
+    }
+
+    private DataInfo deserializeCompact(String serializedText) {
+        char type = serializedText.charAt(1);
+        int keyId = -1;
+        int valueId = -1;
+        int encryptionScheme = EncryptionPolicy.DEFAULT_SCHEME;
+        int codecId = 0;
+        int length = serializedText.length();
+        int index = 2;
+        while (index < length && serializedText.charAt(index) != DELIMITER) {
+            char field = serializedText.charAt(index++);
+            int number = 0;
+            while (index < length && isDigit(serializedText.charAt(index))) {
+                number = number * 10 + (serializedText.charAt(index++) - '0');
+            }
+            if (field == FIELD_KEY_TYPE) {
+                keyId = number;
+            } else if (field == FIELD_VALUE_TYPE) {
+                valueId = number;
+            } else if (field == FIELD_ENCRYPTION) {
+                encryptionScheme = number;
+            } else if (field == FIELD_CODEC) {
+                codecId = number;
+            }
+        }
+        if (index >= length) {
+            throw new IllegalArgumentException("文本中应包含分隔符");
+        }
+
+        Class<?> keyClazz = DataInfo.isPrimitive(type) ? DataInfo.primitiveClass(type)
+                : keyId < 0 ? null : typeTable.resolve(keyId);
+        Class<?> valueClazz = valueId < 0 ? null : typeTable.resolve(valueId);
+        return new DataInfo(type, serializedText.substring(index + 1), keyClazz, valueClazz,
+                encryptionScheme, codecId);
+    }
+
+    private static void appendFields(StringBuilder builder, int encryptionScheme, int codecId) {
+        if (encryptionScheme != EncryptionPolicy.DEFAULT_SCHEME) {
+            builder.append(FIELD_ENCRYPTION).append(encryptionScheme);
+        }
+        if (codecId != 0) {
+            builder.append(FIELD_CODEC).append(codecId);
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isCompact(String serializedText) {
+        return serializedText.length() > 2 && serializedText.charAt(0) == COMPACT_VERSION;
+    }
+
+    private Class<?> forName(String className) {
+        if (className == null || className.length() == 0) {
+            return null;
+        }
+        Class<?> clazz = classCache.get(className);
+        if (clazz == null) {
+            try {
+                clazz = Class.forName(className);
+                classCache.put(className, clazz);
+            } catch (ClassNotFoundException e) {
+                logInterceptor.onLog("KVSerializer -> " + e.getMessage());
+            }
+        }
+        return clazz;
+    }
+
 }
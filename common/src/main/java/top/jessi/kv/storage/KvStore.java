@@ -0,0 +1,393 @@
+package top.jessi.kv.storage;
+
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * 独立命名空间的键值存储实例，由 {@link KV#open(String, KvBuilder)} 创建。
+ *
+ * <p>每个实例拥有各自的 {@link Storage}、加密方案、解码缓存和异步写入队列，与 {@link KV} 的默认存储及
+ * 其它实例互不影响。方法语义与 {@link KV} 中的同名静态方法一致。</p>
+ */
+public final class KvStore {
+
+    private final String name;
+    private final KvFacade facade;
+
+    KvStore(String name, KvFacade facade) {
+        this.name = name;
+        this.facade = facade;
+    }
+
+    /**
+     * 获取命名空间名称。
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 保存任意类型的数据，包括集合、基本类型和自定义对象。
+     *
+     * @param key   用于区分数据的键
+     * @param value 待加密和持久化的数据
+     * @return 操作成功返回 true，任何步骤失败均返回 false
+     */
+    public <T> boolean put(String key, T value) {
+        return facade.put(key, value);
+    }
+
+    /**
+     * 批量保存数据，所有值先完成转换和加密，再一次性提交到存储。
+     * 值为 null 的键将被删除。任一值编码失败时不会写入任何数据。
+     *
+     * @param entries 待保存的键值对
+     * @return 全部保存成功返回 true
+     */
+    public boolean putAll(Map<String, ?> entries) {
+        return facade.putAll(entries);
+    }
+
+    /**
+     * 开始一个事务，收集多个写入和删除，调用 {@link KvTransaction#commit()} 时一次原子提交，
+     * 读取方不会看到只完成一部分的更新。
+     *
+     * <pre>
+     * store.edit().put("user.name", name).put("user.age", age).delete("user.token").commit();
+     * </pre>
+     *
+     * @return 事务
+     */
+    public KvTransaction edit() {
+        return facade.edit();
+    }
+
+    /**
+     * 根据给定的键获取原始数据及其原始类型。
+     * 注意：由于 KV 使用序列化机制，此操作不保证完全正确。
+     * 请求的数据类型发生任何变化都可能影响结果。
+     * 基本类型和 String 类型的返回是有保证的。
+     *
+     * @param key 用于获取持久化数据的键
+     * @return 原始对象
+     */
+    public <T> T get(String key) {
+        return facade.get(key);
+    }
+
+    /**
+     * 获取已保存的数据，如果为 null，则返回默认值。
+     *
+     * @param key          用于获取已保存数据的键
+     * @param defaultValue 结果为 null 时返回的默认值
+     * @return 已保存的对象
+     */
+    public <T> T get(String key, T defaultValue) {
+        return facade.get(key, defaultValue);
+    }
+
+    /**
+     * 按指定类型获取数据。由调用方提供类型，读取时无需解析存储中记录的类名。
+     *
+     * @param key  用于获取持久化数据的键
+     * @param type 数据的类型
+     * @return 已保存的对象，不存在或无法按该类型解码时返回 null
+     */
+    public <T> T getAs(String key, Class<T> type) {
+        return facade.getAs(key, (Type) type);
+    }
+
+    /**
+     * 按指定的泛型类型获取数据，例如 {@code new TypeToken<List<User>>() {}.getType()}。
+     * 由调用方提供类型，读取时无需解析存储中记录的类名。
+     *
+     * @param key  用于获取持久化数据的键
+     * @param type 数据的类型
+     * @return 已保存的对象，不存在或无法按该类型解码时返回 null
+     */
+    public <T> T getAs(String key, Type type) {
+        return facade.getAs(key, type);
+    }
+
+    /**
+     * 获取 int 类型的数据，返回基本类型，读取时不经过 Gson。
+     *
+     * @param key          用于获取已保存数据的键
+     * @param defaultValue 不存在或类型不符时返回的默认值
+     * @return 已保存的值
+     */
+    public int getInt(String key, int defaultValue) {
+        return facade.getInt(key, defaultValue);
+    }
+
+    /**
+     * 获取 long 类型的数据，返回基本类型，读取时不经过 Gson。
+     *
+     * @param key          用于获取已保存数据的键
+     * @param defaultValue 不存在或类型不符时返回的默认值
+     * @return 已保存的值
+     */
+    public long getLong(String key, long defaultValue) {
+        return facade.getLong(key, defaultValue);
+    }
+
+    /**
+     * 获取 boolean 类型的数据，返回基本类型，读取时不经过 Gson。
+     *
+     * @param key          用于获取已保存数据的键
+     * @param defaultValue 不存在或类型不符时返回的默认值
+     * @return 已保存的值
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return facade.getBoolean(key, defaultValue);
+    }
+
+    /**
+     * 获取 double 类型的数据，返回基本类型，读取时不经过 Gson。
+     *
+     * @param key          用于获取已保存数据的键
+     * @param defaultValue 不存在或类型不符时返回的默认值
+     * @return 已保存的值
+     */
+    public double getDouble(String key, double defaultValue) {
+        return facade.getDouble(key, defaultValue);
+    }
+
+    /**
+     * 获取存储中的所有数据
+     *
+     * @param <T> 类型
+     * @return 以Map的形式返回
+     */
+    public <T> Map<String, T> getAll() {
+        return facade.getAll();
+    }
+
+    /**
+     * 批量获取数据，只读取一次存储。不存在或解码失败的键不会出现在结果中。
+     *
+     * @param keys 待获取的键
+     * @return 以Map的形式返回
+     */
+    public <T> Map<String, T> getAll(Collection<String> keys) {
+        return facade.getAll(keys);
+    }
+
+    /**
+     * 获取已保存数据的数量，每个键计为 1。
+     *
+     * @return 数据条数
+     */
+    public long count() {
+        return facade.count();
+    }
+
+    /**
+     * 逐条遍历存储中的所有数据，内存中最多只保留一批数据，值在调用 {@link Map.Entry#getValue()} 时才解码。
+     * 解码失败的值返回 null 并通知 {@link DecodeFailureListener}。使用完毕后需关闭返回的迭代器。
+     *
+     * @param <T> 类型
+     * @return 迭代器
+     */
+    public <T> KvIterator<T> scan() {
+        return facade.scan(Storage.DEFAULT_SCAN_BATCH_SIZE);
+    }
+
+    /**
+     * 同 {@link #scan()}，可指定每批从存储读取的条数。
+     *
+     * @param batchSize 每批读取的条数
+     * @param <T>       类型
+     * @return 迭代器
+     */
+    public <T> KvIterator<T> scan(int batchSize) {
+        return facade.scan(batchSize);
+    }
+
+    /**
+     * 清空存储。注意：加密相关数据（如盐键等）不会被删除。
+     * 如需删除加密信息，请使用 resetCrypto 方法。
+     *
+     * @return 清空成功返回 true
+     */
+    public boolean deleteAll() {
+        return facade.deleteAll();
+    }
+
+    /**
+     * 批量移除指定的键值对，一次性提交到存储。
+     *
+     * @param keys 待删除的键
+     * @return 删除成功返回 true
+     */
+    public boolean deleteAll(Collection<String> keys) {
+        return facade.deleteAll(keys);
+    }
+
+    /**
+     * 从存储中移除指定的键值对。
+     *
+     * @param key 用于从存储中移除相关数据的键
+     * @return 删除成功返回 true
+     */
+    public boolean delete(String key) {
+        return facade.delete(key);
+    }
+
+    /**
+     * 检查给定的键是否存在于存储中。
+     *
+     * @param key 待检查的键
+     * @return 如果键存在于存储中则返回 true
+     */
+    public boolean contains(String key) {
+        return facade.contains(key);
+    }
+
+    /**
+     * 按字典序获取以 prefix 开头的键名，不读取和解码值，耗时只与匹配的键数量相关。
+     * 存储不支持前缀查询时，第一次调用会遍历一次存储建立内存索引。
+     *
+     * @param prefix 键名前缀，空字符串表示全部键名
+     * @return 匹配的键名
+     */
+    public List<String> keys(String prefix) {
+        return facade.keys(prefix);
+    }
+
+    /**
+     * 获取所有以 prefix 开头的数据，只读取和解码匹配的条目。
+     *
+     * @param prefix 键名前缀
+     * @param <T>    类型
+     * @return 以Map的形式返回
+     */
+    public <T> Map<String, T> getByPrefix(String prefix) {
+        return facade.getByPrefix(prefix);
+    }
+
+    /**
+     * 删除所有以 prefix 开头的数据，一次批量删除。
+     *
+     * @param prefix 键名前缀
+     * @return 全部删除成功返回 true
+     */
+    public boolean deleteByPrefix(String prefix) {
+        return facade.deleteByPrefix(prefix);
+    }
+
+    /**
+     * 在后台线程中保存数据。同一个键的异步操作按调用顺序执行，不同键之间并行执行。
+     * 注意：同步的 get 不会等待尚未完成的异步写入，需要时请先调用 {@link #flush()}。
+     *
+     * @param key   用于区分数据的键
+     * @param value 待加密和持久化的数据
+     * @return 结果与 {@link #put(String, Object)} 相同的 Future
+     */
+    public <T> Future<Boolean> putAsync(String key, T value) {
+        return facade.putAsync(key, value);
+    }
+
+    /**
+     * 在后台线程中获取数据，保证能读到此前对同一个键提交的异步写入。
+     *
+     * @param key 用于获取持久化数据的键
+     * @return 结果与 {@link #get(String)} 相同的 Future
+     */
+    public <T> Future<T> getAsync(String key) {
+        return facade.getAsync(key);
+    }
+
+    /**
+     * 在后台线程中获取数据，完成后在该后台线程中回调结果。
+     *
+     * @param key      用于获取持久化数据的键
+     * @param callback 结果回调
+     * @return 结果与 {@link #get(String)} 相同的 Future
+     */
+    public <T> Future<T> getAsync(String key, KvCallback<T> callback) {
+        return facade.getAsync(key, callback);
+    }
+
+    /**
+     * 在后台线程中删除数据，与同一个键的其他异步操作保持顺序。
+     *
+     * @param key 用于从存储中移除相关数据的键
+     * @return 结果与 {@link #delete(String)} 相同的 Future
+     */
+    public Future<Boolean> deleteAsync(String key) {
+        return facade.deleteAsync(key);
+    }
+
+    /**
+     * 阻塞直到此前提交的所有异步写入（putAsync、deleteAsync）都已写入存储。
+     * 请勿在主线程中调用。
+     */
+    public void flush() {
+        facade.flush();
+    }
+
+    /**
+     * 以流的方式保存大数据（如图片缓存、导出的日志），数据按固定大小分块加密写入，不会一次性读入内存。
+     * 流式数据与普通键值分开保存，不能通过 {@link #get(String)} 读取，也不计入 {@link #count()}。
+     * 本方法不会关闭输入流，请勿在主线程中调用。
+     *
+     * @param key   用于保存数据的键
+     * @param input 数据来源
+     * @return 全部写入成功返回 true，失败时不会覆盖已有数据
+     */
+    public boolean putStream(String key, InputStream input) {
+        return facade.putStream(key, input);
+    }
+
+    /**
+     * 获取通过 {@link #putStream(String, InputStream)} 保存的数据，读取时逐块解密。使用完毕后需关闭返回的流。
+     *
+     * @param key 用于获取数据的键
+     * @return 输入流，数据不存在或无法读取时返回 null
+     */
+    public InputStream getStream(String key) {
+        return facade.getStream(key);
+    }
+
+    /**
+     * 删除通过 {@link #putStream(String, InputStream)} 保存的数据。
+     *
+     * @param key 用于删除数据的键
+     * @return 删除成功或数据不存在时返回 true
+     */
+    public boolean deleteStream(String key) {
+        return facade.deleteStream(key);
+    }
+
+    /**
+     * 按系统内存级别裁剪解码缓存，可在 Application 或 Activity 的 onTrimMemory 中直接调用。
+     *
+     * @param level {@link android.content.ComponentCallbacks2} 中定义的内存级别
+     */
+    public void trimMemory(int level) {
+        facade.trimMemory(level);
+    }
+
+    /**
+     * 获取解码缓存的命中、未命中等统计信息，未启用缓存时各项均为 0。
+     *
+     * @return 统计快照
+     */
+    public CacheStats getCacheStats() {
+        return facade.getCacheStats();
+    }
+
+    /**
+     * 等待异步写入完成，释放线程池和缓存，并从已打开的实例中移除。之后再次
+     * {@link KV#open(String, KvBuilder)} 同一名称会创建新的实例。
+     */
+    public void close() {
+        KV.close(this);
+        facade.destroy();
+    }
+}
@@ -0,0 +1,64 @@
+package top.jessi.kv.storage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 多个写入和删除组成的事务，由 {@link KV#edit()} 创建。
+ *
+ * <p>{@link #commit()} 之前所有操作只保存在内存中，提交时一次写入存储：SharedPreferences 使用同一个 Editor，
+ * SQLite 使用一个事务，文件存储追加一条批量记录。同一个键的多次操作以最后一次为准。
+ * 存储不支持原子提交时（如 MMKV）退化为依次写入和删除。</p>
+ *
+ * <p>本类不是线程安全的，不应在多个线程间共享。</p>
+ */
+public final class KvTransaction {
+
+    private final DefaultKvFacade facade;
+    /** 键到新值的映射，值为 null 表示删除 */
+    private final Map<String, Object> operations = new LinkedHashMap<>();
+
+    KvTransaction(DefaultKvFacade facade) {
+        this.facade = facade;
+    }
+
+    /**
+     * 写入一条数据，值为 null 时等同于 {@link #delete(String)}。
+     *
+     * @return 当前事务，便于链式调用
+     */
+    public <T> KvTransaction put(String key, T value) {
+        KvUtils.checkNull("Key", key);
+        TypeTable.checkNotReserved(key);
+        operations.put(key, value);
+        return this;
+    }
+
+    /**
+     * 删除一条数据。
+     *
+     * @return 当前事务，便于链式调用
+     */
+    public KvTransaction delete(String key) {
+        KvUtils.checkNull("Key", key);
+        TypeTable.checkNotReserved(key);
+        operations.put(key, null);
+        return this;
+    }
+
+    /**
+     * 提交全部操作，任一值编码失败时不写入任何数据。提交后事务被清空，可以继续使用。
+     *
+     * @return 提交成功返回 true，否则返回 false
+     */
+    public boolean commit() {
+        if (operations.isEmpty()) {
+            return true;
+        }
+        try {
+            return facade.commit(operations);
+        } finally {
+            operations.clear();
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package top.jessi.kv.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 基于追加日志的文件存储实现，写入和删除只在文件末尾追加一条记录，耗时与存储总大小无关。
+ *
+ * <p>记录格式：</p>
+ * <pre>
+ * int 记录体长度 | int 记录体 CRC32 | byte 操作 | int 键长度 | 键（UTF-8） [ | int 值长度 | 值（UTF-8） ]
+ * int 记录体长度 | int 记录体 CRC32 | byte 批量操作 | int 记录数 | { 上述格式的记录 }
+ * </pre>
+ * <p>删除追加一条不带值的墓碑记录。{@link #writeBatch(Map, Collection)} 将多条记录嵌套在一条批量记录中，
+ * 由外层的校验和保证整批要么全部重放，要么全部丢弃。打开时顺序重放日志重建内存索引，末尾不完整或校验失败的记录会被截断。
+ * 被覆盖的记录和墓碑占比超过阈值时，在后台线程中将有效数据重写到新文件，期间读写不受影响。</p>
+ *
+ * <p>与 {@link FileStorage} 的文件格式不兼容。</p>
+ */
+public class LogFileStorage implements Storage {
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_BATCH = 3;
+    /** 批量记录体中记录数之前的部分：操作 + 记录数 */
+    private static final int BATCH_HEADER_SIZE = 5;
+    /** 记录头：长度 + CRC32 */
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final float DEFAULT_COMPACTION_RATIO = 0.5f;
+    /** 文件小于该值时不整理，避免小文件频繁重写 */
+    private static final long MIN_COMPACTION_SIZE = 64 * 1024;
+
+    private final File file;
+    private final float compactionRatio;
+    private final Map<String, Entry> index = new HashMap<>();
+    private FileOutputStream output;
+    /** 日志文件的有效长度 */
+    private long fileSize;
+    /** 索引中每个键最新记录的总长度，fileSize 与它的差即为可回收的空间 */
+    private long liveSize;
+    /** 每次清空时递增，用于放弃清空前开始的整理 */
+    private long generation;
+    private boolean compacting;
+    /** 为 true 时每次追加后同步落盘 */
+    private volatile boolean syncWrites;
+
+    public LogFileStorage(String filePath) {
+        this(filePath, DEFAULT_COMPACTION_RATIO);
+    }
+
+    /**
+     * @param filePath        日志文件路径
+     * @param compactionRatio 可回收空间占文件大小的比例超过该值时触发整理，取值 (0, 1)
+     */
+    public LogFileStorage(String filePath, float compactionRatio) {
+        KvUtils.checkNullOrEmpty("File path", filePath);
+        if (compactionRatio <= 0 || compactionRatio >= 1) {
+            throw new IllegalArgumentException("Compaction ratio should be between 0 and 1");
+        }
+        this.file = new File(filePath);
+        this.compactionRatio = compactionRatio;
+        try {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Cannot create directory " + parent);
+            }
+            load();
+            output = new FileOutputStream(file, true);
+        } catch (IOException e) {
+            throw new UnsupportedOperationException("Log file open failed. Please check if the file path is valid", e);
+        }
+    }
+
+    @Override
+    public synchronized <T> boolean put(String key, T value) {
+        KvUtils.checkNull("key", key);
+        String text = (String) value;
+        byte[] record = encode(OP_PUT, key, text);
+        if (!append(record)) {
+            return false;
+        }
+        apply(key, text, record.length);
+        maybeCompact();
+        return true;
+    }
+
+    @Override
+    public synchronized <T> boolean putAll(Map<String, T> entries) {
+        List<byte[]> records = new ArrayList<>(entries.size());
+        int total = 0;
+        for (Map.Entry<String, T> entry : entries.entrySet()) {
+            KvUtils.checkNull("key", entry.getKey());
+            byte[] record = encode(OP_PUT, entry.getKey(), (String) entry.getValue());
+            records.add(record);
+            total += record.length;
+        }
+        // 合并为一次写入
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        for (byte[] record : records) {
+            buffer.put(record);
+        }
+        if (!append(buffer.array())) {
+            return false;
+        }
+        int i = 0;
+        for (Map.Entry<String, T> entry : entries.entrySet()) {
+            apply(entry.getKey(), (String) entry.getValue(), records.get(i++).length);
+        }
+        maybeCompact();
+        return true;
+    }
+
+    @Override
+    public synchronized <T> boolean writeBatch(Map<String, T> puts, Collection<String> deletes) {
+        List<String> keys = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        List<byte[]> records = new ArrayList<>();
+        int total = 0;
+        for (String key : deletes) {
+            if (index.containsKey(key)) {
+                byte[] record = encode(OP_DELETE, key, null);
+                keys.add(key);
+                values.add(null);
+                records.add(record);
+                total += record.length;
+            }
+        }
+        for (Map.Entry<String, T> entry : puts.entrySet()) {
+            KvUtils.checkNull("key", entry.getKey());
+            byte[] record = encode(OP_PUT, entry.getKey(), (String) entry.getValue());
+            keys.add(entry.getKey());
+            values.add((String) entry.getValue());
+            records.add(record);
+            total += record.length;
+        }
+        if (records.isEmpty()) {
+            return true;
+        }
+        int bodyLength = BATCH_HEADER_SIZE + total;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + bodyLength);
+        buffer.putInt(bodyLength);
+        buffer.putInt(0);
+        buffer.put(OP_BATCH);
+        buffer.putInt(records.size());
+        for (byte[] record : records) {
+            buffer.put(record);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), RECORD_HEADER_SIZE, bodyLength);
+        buffer.putInt(4, (int) crc.getValue());
+        if (!append(buffer.array())) {
+            return false;
+        }
+        // 批量记录头计为可回收空间，嵌套的记录按各自长度统计
+        fileSize += RECORD_HEADER_SIZE + BATCH_HEADER_SIZE;
+        for (int i = 0; i < records.size(); i++) {
+            apply(keys.get(i), values.get(i), records.get(i).length);
+        }
+        maybeCompact();
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public synchronized <T> T get(String key) {
+        Entry entry = index.get(key);
+        return entry == null ? null : (T) entry.value;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public synchronized <T> Map<String, T> getAll() {
+        Map<String, T> map = new HashMap<>(index.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Entry> entry : index.entrySet()) {
+            map.put(entry.getKey(), (T) entry.getValue().value);
+        }
+        return map;
+    }
+
+    @Override
+    public synchronized <T> KvIterator<T> scan(int batchSize) {
+        // 只复制键名，值在遍历时按批读取
+        return KvIterator.ofKeys(index.keySet().toArray(new String[0]), this, batchSize);
+    }
+
+    @Override
+    public synchronized boolean delete(String key) {
+        if (!index.containsKey(key)) {
+            return true;
+        }
+        byte[] record = encode(OP_DELETE, key, null);
+        if (!append(record)) {
+            return false;
+        }
+        apply(key, null, record.length);
+        maybeCompact();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean deleteAll(Collection<String> keys) {
+        List<byte[]> records = new ArrayList<>();
+        int total = 0;
+        for (String key : keys) {
+            if (index.containsKey(key)) {
+                byte[] record = encode(OP_DELETE, key, null);
+                records.add(record);
+                total += record.length;
+            }
+        }
+        if (records.isEmpty()) {
+            return true;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        for (byte[] record : records) {
+            buffer.put(record);
+        }
+        if (!append(buffer.array())) {
+            return false;
+        }
+        fileSize += total;
+        for (String key : keys) {
+            apply(key, null, 0);
+        }
+        maybeCompact();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean deleteAll() {
+        try {
+            output.getChannel().truncate(0);
+            generation++;
+            index.clear();
+            fileSize = 0;
+            liveSize = 0;
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    @Override
+    public void setDurability(Durability durability) {
+        syncWrites = durability == Durability.SYNC;
+    }
+
+    @Override
+    public synchronized long count() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * 更新内存索引和空间统计，调用前记录已写入文件。
+     *
+     * @param value        新值，删除时为 null
+     * @param recordLength 本条记录的长度，计入文件大小
+     */
+    private void apply(String key, String value, int recordLength) {
+        fileSize += recordLength;
+        Entry previous = value == null ? index.remove(key) : index.put(key, new Entry(value, recordLength));
+        if (previous != null) {
+            liveSize -= previous.size;
+        }
+        if (value != null) {
+            liveSize += recordLength;
+        }
+    }
+
+    private boolean append(byte[] data) {
+        try {
+            output.write(data);
+            if (syncWrites) {
+                output.getFD().sync();
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            // 丢弃可能写了一半的记录，保证后续追加的记录可以被重放
+            try {
+                output.getChannel().truncate(fileSize);
+            } catch (IOException ignored) {
+                // 打开时会截断不完整的记录
+            }
+        }
+        return false;
+    }
+
+    private void load() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        long valid = 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                int checksum;
+                byte[] body;
+                try {
+                    length = input.readInt();
+                    checksum = input.readInt();
+                    if (length <= 0 || length > file.length() - valid) {
+                        break;
+                    }
+                    body = new byte[length];
+                    input.readFully(body);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(body, 0, body.length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(body);
+                byte op = buffer.get();
+                if (op == OP_BATCH) {
+                    int count = buffer.getInt();
+                    fileSize += RECORD_HEADER_SIZE + BATCH_HEADER_SIZE;
+                    for (int i = 0; i < count; i++) {
+                        int nestedLength = buffer.getInt();
+                        // 嵌套记录由外层校验和覆盖
+                        buffer.getInt();
+                        replay(buffer, RECORD_HEADER_SIZE + nestedLength);
+                    }
+                } else {
+                    buffer.position(0);
+                    replay(buffer, RECORD_HEADER_SIZE + length);
+                }
+                valid = fileSize;
+            }
+        }
+        if (valid < file.length()) {
+            // 上次写入中断留下的不完整记录
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(valid);
+            }
+        }
+    }
+
+    /**
+     * 重放从 buffer 当前位置开始的一条记录体。
+     */
+    private void replay(ByteBuffer buffer, int recordLength) {
+        byte op = buffer.get();
+        String key = readString(buffer);
+        String value = op == OP_PUT ? readString(buffer) : null;
+        apply(key, value, recordLength);
+    }
+
+    private void maybeCompact() {
+        long garbage = fileSize - liveSize;
+        if (compacting || fileSize < MIN_COMPACTION_SIZE || garbage <= fileSize * compactionRatio) {
+            return;
+        }
+        compacting = true;
+        final Map<String, Entry> snapshot = new HashMap<>(index);
+        final long snapshotSize = fileSize;
+        final long snapshotGeneration = generation;
+        Thread thread = new Thread(() -> compact(snapshot, snapshotSize, snapshotGeneration), "KV-LogCompaction");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 将快照中的有效记录写入新文件，再追加快照之后新写入的记录，最后替换旧文件。
+     * 只有追加剩余记录和替换文件时持有锁。
+     */
+    private void compact(Map<String, Entry> snapshot, long snapshotSize, long snapshotGeneration) {
+        File temp = new File(file.getPath() + ".compact");
+        boolean compacted = false;
+        try {
+            FileOutputStream tempOutput = new FileOutputStream(temp);
+            try (OutputStream buffered = new BufferedOutputStream(tempOutput)) {
+                for (Map.Entry<String, Entry> entry : snapshot.entrySet()) {
+                    buffered.write(encode(OP_PUT, entry.getKey(), entry.getValue().value));
+                }
+                buffered.flush();
+                synchronized (this) {
+                    if (snapshotGeneration != generation) {
+                        return;
+                    }
+                    copyTail(snapshotSize, fileSize, buffered);
+                    buffered.flush();
+                    tempOutput.getFD().sync();
+                    output.close();
+                    try {
+                        if (!temp.renameTo(file)) {
+                            throw new IOException("Rename failed: " + temp);
+                        }
+                        fileSize = file.length();
+                        compacted = true;
+                    } finally {
+                        output = new FileOutputStream(file, true);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (temp.exists() && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+            synchronized (this) {
+                compacting = false;
+                // 整理期间追加的记录可能又产生了大量可回收空间
+                if (compacted) {
+                    maybeCompact();
+                }
+            }
+        }
+    }
+
+    private void copyTail(long from, long to, OutputStream target) throws IOException {
+        if (from >= to) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(from);
+            byte[] buffer = new byte[8 * 1024];
+            long remaining = to - from;
+            while (remaining > 0) {
+                int count = raf.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (count < 0) {
+                    throw new EOFException("Log file is shorter than expected");
+                }
+                target.write(buffer, 0, count);
+                remaining -= count;
+            }
+        }
+    }
+
+    private static byte[] encode(byte op, String key, String value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = 1 + 4 + keyBytes.length + (valueBytes == null ? 0 : 4 + valueBytes.length);
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + bodyLength);
+        buffer.putInt(bodyLength);
+        buffer.putInt(0);
+        buffer.put(op);
+        buffer.putInt(keyBytes.length).put(keyBytes);
+        if (valueBytes != null) {
+            buffer.putInt(valueBytes.length).put(valueBytes);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), RECORD_HEADER_SIZE, bodyLength);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String text = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return text;
+    }
+
+    private static final class Entry {
+        final String value;
+        /** 该键最新一条记录在文件中的长度 */
+        final int size;
+
+        Entry(String value, int size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+}
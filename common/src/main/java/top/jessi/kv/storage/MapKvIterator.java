@@ -0,0 +1,31 @@
+package top.jessi.kv.storage;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 遍历内存中 Map 的 {@link KvIterator}。
+ */
+final class MapKvIterator<T> implements KvIterator<T> {
+
+    private final Iterator<Map.Entry<String, T>> iterator;
+
+    MapKvIterator(Map<String, T> map) {
+        this.iterator = map == null ? Collections.<Map.Entry<String, T>>emptyIterator() : map.entrySet().iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public Map.Entry<String, T> next() {
+        return iterator.next();
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,613 @@
+package top.jessi.kv.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 基于内存映射文件的存储实现，值保存在映射区域中，堆上只保留键到偏移量和长度的目录。
+ *
+ * <p>数据由两个文件组成：</p>
+ * <ul>
+ *     <li>数据文件 {@code 路径.代数}：依次追加 {@code int CRC32 | 值（UTF-8）}，通过 {@link FileChannel#map} 读写，
+ *     读取时校验 CRC，未完整落盘的值视为不存在；</li>
+ *     <li>目录文件 {@code 路径.dir}：文件头记录当前代数，之后每次写入或删除追加一条
+ *     {@code int CRC32 | int 键长度 | 键 | int 偏移量 | int 长度} 记录，长度为 -1 表示删除。
+ *     {@link #writeBatch(Map, Collection)} 先追加一条键为空、长度为 -2、偏移量为记录数的批量标记，
+ *     重放时只有标记之后的记录全部完整才会生效。</li>
+ * </ul>
+ * <p>{@link Durability#SYNC} 下追加目录记录前先将映射区域落盘，断电后目录不会指向未写入的值；其它模式不逐次落盘，
+ * 断电后目录可能指向未写完的值，读取时由 CRC 识别并视为不存在。打开时只重放目录文件，不读取任何值。
+ * 被覆盖或删除的值占比超过一半时，将有效值复制到新一代数据文件，再以重命名目录文件作为提交点，
+ * 中途崩溃不会破坏旧数据。单个存储的数据文件不能超过 2GB。</p>
+ */
+public class MappedFileStorage implements Storage {
+
+    /** "KVD2" */
+    private static final int DIRECTORY_MAGIC = 0x4B564432;
+    private static final String DIRECTORY_SUFFIX = ".dir";
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    /** 数据文件小于该值时不整理 */
+    private static final int MIN_COMPACTION_SIZE = 256 * 1024;
+    private static final int TOMBSTONE = -1;
+    private static final int BATCH = -2;
+    /** 每个值前的 CRC32 */
+    private static final int VALUE_HEADER_SIZE = 4;
+
+    private final String basePath;
+    private final File directoryFile;
+    /** 键到 (偏移量 << 32 | 长度) 的目录 */
+    private final Map<String, Long> directory = new HashMap<>();
+    private final CRC32 crc = new CRC32();
+    private int generation;
+    private RandomAccessFile dataFile;
+    private MappedByteBuffer data;
+    /** 下一个值的写入位置 */
+    private int end;
+    /** 目录中所有值（含 CRC）的总长度，end 与它的差即为可回收的空间 */
+    private long liveSize;
+    /** 目录文件中的记录数，包括已被覆盖的记录 */
+    private int directoryRecords;
+    private DataOutputStream directoryOutput;
+    /** 目录文件的底层输出流，用于同步落盘 */
+    private FileOutputStream directoryFileOutput;
+    /** 为 true 时每次写入都先将值、再将目录同步落盘 */
+    private volatile boolean syncWrites;
+
+    /**
+     * @param filePath 存储路径，实际会创建 {@code filePath.dir} 和 {@code filePath.代数} 两个文件
+     */
+    public MappedFileStorage(String filePath) {
+        KvUtils.checkNullOrEmpty("File path", filePath);
+        this.basePath = filePath;
+        this.directoryFile = new File(filePath + DIRECTORY_SUFFIX);
+        try {
+            File parent = directoryFile.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Cannot create directory " + parent);
+            }
+            open();
+        } catch (IOException e) {
+            throw new UnsupportedOperationException("Mapped file open failed. Please check if the file path is valid", e);
+        }
+    }
+
+    @Override
+    public synchronized <T> boolean put(String key, T value) {
+        KvUtils.checkNull("key", key);
+        if (!write(key, ((String) value).getBytes(StandardCharsets.UTF_8))) {
+            return false;
+        }
+        boolean flushed = flushDirectory();
+        maybeCompact();
+        return flushed;
+    }
+
+    @Override
+    public synchronized <T> boolean putAll(Map<String, T> entries) {
+        // 全部值只需落盘一次
+        return writeBatch(entries, Collections.<String>emptyList());
+    }
+
+    /**
+     * 先写入全部值，再将批量标记和全部目录记录一次追加到目录文件，提交前写入的值不可达。
+     */
+    @Override
+    public synchronized <T> boolean writeBatch(Map<String, T> puts, Collection<String> deletes) {
+        List<String> removed = new ArrayList<>();
+        for (String key : deletes) {
+            if (directory.containsKey(key)) {
+                removed.add(key);
+            }
+        }
+        for (String key : puts.keySet()) {
+            KvUtils.checkNull("key", key);
+        }
+        if (puts.isEmpty() && removed.isEmpty()) {
+            return true;
+        }
+        List<String> keys = new ArrayList<>(puts.size());
+        long[] locations = new long[puts.size()];
+        int position = end;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream records = new DataOutputStream(bytes);
+            writeRecord(records, "", puts.size() + removed.size(), BATCH);
+            for (Map.Entry<String, T> entry : puts.entrySet()) {
+                byte[] value = ((String) entry.getValue()).getBytes(StandardCharsets.UTF_8);
+                writeValue(position, value);
+                writeRecord(records, entry.getKey(), position, value.length);
+                locations[keys.size()] = ((long) position << 32) | value.length;
+                keys.add(entry.getKey());
+                position += VALUE_HEADER_SIZE + value.length;
+            }
+            for (String key : removed) {
+                writeRecord(records, key, 0, TOMBSTONE);
+            }
+            records.flush();
+            if (!appendBatch(bytes.toByteArray())) {
+                return false;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            Long previous = directory.put(keys.get(i), locations[i]);
+            if (previous != null) {
+                liveSize -= size(previous);
+            }
+            liveSize += size(locations[i]);
+        }
+        for (String key : removed) {
+            liveSize -= size(directory.remove(key));
+        }
+        end = position;
+        directoryRecords += 1 + keys.size() + removed.size();
+        maybeCompact();
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public synchronized <T> T get(String key) {
+        Long location = directory.get(key);
+        return location == null ? null : (T) read(location);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public synchronized <T> Map<String, T> getAll() {
+        Map<String, T> map = new HashMap<>(directory.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Long> entry : directory.entrySet()) {
+            String value = read(entry.getValue());
+            if (value != null) {
+                map.put(entry.getKey(), (T) value);
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public synchronized <T> KvIterator<T> scan(int batchSize) {
+        // 只复制键名，值在遍历时按批读取
+        return KvIterator.ofKeys(directory.keySet().toArray(new String[0]), this, batchSize);
+    }
+
+    @Override
+    public synchronized boolean delete(String key) {
+        if (!directory.containsKey(key)) {
+            return true;
+        }
+        if (!remove(key)) {
+            return false;
+        }
+        boolean flushed = flushDirectory();
+        maybeCompact();
+        return flushed;
+    }
+
+    @Override
+    public synchronized boolean deleteAll(Collection<String> keys) {
+        for (String key : keys) {
+            if (directory.containsKey(key) && !remove(key)) {
+                flushDirectory();
+                return false;
+            }
+        }
+        boolean flushed = flushDirectory();
+        maybeCompact();
+        return flushed;
+    }
+
+    @Override
+    public synchronized boolean deleteAll() {
+        return rewrite(new HashMap<>());
+    }
+
+    @Override
+    public void setDurability(Durability durability) {
+        syncWrites = durability == Durability.SYNC;
+    }
+
+    @Override
+    public synchronized long count() {
+        return directory.size();
+    }
+
+    @Override
+    public synchronized boolean contains(String key) {
+        return directory.containsKey(key);
+    }
+
+    /**
+     * @return 值的文本，CRC 不匹配（断电前未完整落盘）时返回 null
+     */
+    private String read(long location) {
+        int offset = (int) (location >>> 32);
+        int length = (int) location;
+        byte[] bytes = new byte[length];
+        ByteBuffer view = data.duplicate();
+        view.position(offset);
+        int checksum = view.getInt();
+        view.get(bytes);
+        if (checksum(bytes) != checksum) {
+            new IOException("Value checksum mismatch at " + offset).printStackTrace();
+            return null;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 在 position 处写入 CRC 和值，调用方负责落盘。
+     */
+    private void writeValue(int position, byte[] bytes) throws IOException {
+        ensureCapacity((long) position + VALUE_HEADER_SIZE + bytes.length);
+        ByteBuffer view = data.duplicate();
+        view.position(position);
+        view.putInt(checksum(bytes)).put(bytes);
+    }
+
+    /**
+     * 先写值并落盘，再追加目录记录，目录记录写入前崩溃只会留下不可达的值。
+     */
+    private boolean write(String key, byte[] bytes) {
+        try {
+            writeValue(end, bytes);
+            if (syncWrites) {
+                // 值先于目录记录落盘
+                data.force();
+            }
+            appendRecord(key, end, bytes.length);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        long location = ((long) end << 32) | bytes.length;
+        Long previous = directory.put(key, location);
+        if (previous != null) {
+            liveSize -= size(previous);
+        }
+        liveSize += size(location);
+        end += VALUE_HEADER_SIZE + bytes.length;
+        return true;
+    }
+
+    private int checksum(byte[] bytes) {
+        crc.reset();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @return 值在数据文件中占用的字节数，包括 CRC
+     */
+    private static int size(long location) {
+        return VALUE_HEADER_SIZE + (int) location;
+    }
+
+    private boolean remove(String key) {
+        try {
+            appendRecord(key, 0, TOMBSTONE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        Long previous = directory.remove(key);
+        if (previous != null) {
+            liveSize -= size(previous);
+        }
+        return true;
+    }
+
+    private void appendRecord(String key, int offset, int length) throws IOException {
+        writeRecord(directoryOutput, key, offset, length);
+        directoryRecords++;
+    }
+
+    /**
+     * 以一次写入追加一个批次的目录记录，失败时截掉写了一半的部分，避免后续记录被计入该批次。
+     */
+    private boolean appendBatch(byte[] records) {
+        long mark = -1;
+        try {
+            if (syncWrites) {
+                // 值先于目录记录落盘，整个批次只落盘一次
+                data.force();
+            }
+            directoryOutput.flush();
+            mark = directoryFileOutput.getChannel().size();
+            directoryFileOutput.write(records);
+            if (syncWrites) {
+                directoryFileOutput.getFD().sync();
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            if (mark >= 0) {
+                try {
+                    directoryFileOutput.getChannel().truncate(mark);
+                } catch (IOException ignored) {
+                    // 打开时会丢弃不完整的批次
+                }
+            }
+            return false;
+        }
+    }
+
+    private boolean flushDirectory() {
+        try {
+            directoryOutput.flush();
+            if (syncWrites) {
+                directoryFileOutput.getFD().sync();
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private void writeRecord(DataOutputStream output, String key, int offset, int length) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(12 + keyBytes.length);
+        body.putInt(keyBytes.length).put(keyBytes).putInt(offset).putInt(length);
+        crc.reset();
+        crc.update(body.array(), 0, body.capacity());
+        output.writeInt((int) crc.getValue());
+        output.write(body.array());
+    }
+
+    private void ensureCapacity(long required) throws IOException {
+        if (required <= data.capacity()) {
+            return;
+        }
+        if (required > Integer.MAX_VALUE) {
+            throw new IOException("Mapped file is full");
+        }
+        long capacity = Math.min(Integer.MAX_VALUE, Math.max(required, (long) data.capacity() * 2));
+        data = dataFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * 被覆盖、删除的值或目录中的过期记录过多时整理，整理失败不影响本次写入的结果。
+     */
+    private void maybeCompact() {
+        boolean dataGarbage = end >= MIN_COMPACTION_SIZE && end - liveSize > liveSize;
+        boolean directoryGarbage = directoryRecords > 1024 && directoryRecords > directory.size() * 4;
+        if (dataGarbage || directoryGarbage) {
+            rewrite(directory);
+        }
+    }
+
+    /**
+     * 将给定条目的值复制到下一代数据文件，并重写目录文件。重命名目录文件是提交点，之前失败则保持原状。
+     */
+    private boolean rewrite(Map<String, Long> entries) {
+        int nextGeneration = generation + 1;
+        File nextDataFile = dataFile(nextGeneration);
+        File temp = new File(directoryFile.getPath() + ".tmp");
+        RandomAccessFile nextFile = null;
+        try {
+            long size = 0;
+            for (Long location : entries.values()) {
+                size += size(location);
+            }
+            nextFile = new RandomAccessFile(nextDataFile, "rw");
+            MappedByteBuffer nextData = nextFile.getChannel()
+                    .map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+            Map<String, Long> nextDirectory = new HashMap<>(entries.size() * 4 / 3 + 1);
+            int nextEnd = 0;
+            FileOutputStream tempOutput = new FileOutputStream(temp);
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(tempOutput))) {
+                output.writeInt(DIRECTORY_MAGIC);
+                output.writeInt(nextGeneration);
+                for (Map.Entry<String, Long> entry : entries.entrySet()) {
+                    long location = entry.getValue();
+                    int length = (int) location;
+                    // 连同 CRC 一起复制
+                    ByteBuffer source = data.duplicate();
+                    source.position((int) (location >>> 32)).limit((int) (location >>> 32) + size(location));
+                    nextData.position(nextEnd);
+                    nextData.put(source);
+                    writeRecord(output, entry.getKey(), nextEnd, length);
+                    nextDirectory.put(entry.getKey(), ((long) nextEnd << 32) | length);
+                    nextEnd += size(location);
+                }
+                nextData.force();
+                output.flush();
+                tempOutput.getFD().sync();
+            }
+            directoryOutput.close();
+            if (!temp.renameTo(directoryFile)) {
+                directoryOutput = openDirectoryOutput();
+                throw new IOException("Rename failed: " + temp);
+            }
+
+            File previousDataFile = dataFile(generation);
+            dataFile.close();
+            dataFile = nextFile;
+            nextFile = null;
+            data = nextData;
+            generation = nextGeneration;
+            end = nextEnd;
+            liveSize = nextEnd;
+            directory.clear();
+            directory.putAll(nextDirectory);
+            directoryRecords = directory.size();
+            directoryOutput = openDirectoryOutput();
+            if (!previousDataFile.delete()) {
+                previousDataFile.deleteOnExit();
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            if (nextFile != null) {
+                try {
+                    nextFile.close();
+                } catch (IOException ignored) {
+                    // 未提交的数据文件
+                }
+                if (!nextDataFile.delete()) {
+                    nextDataFile.deleteOnExit();
+                }
+            }
+            if (temp.exists() && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    private void open() throws IOException {
+        if (!directoryFile.exists()) {
+            try (DataOutputStream output = new DataOutputStream(new FileOutputStream(directoryFile))) {
+                output.writeInt(DIRECTORY_MAGIC);
+                output.writeInt(0);
+            }
+        }
+
+        long valid = 8;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(directoryFile)))) {
+            if (input.readInt() != DIRECTORY_MAGIC) {
+                throw new IOException("Invalid directory file: " + directoryFile);
+            }
+            generation = input.readInt();
+            long fileLength = directoryFile.length();
+            long read = valid;
+            int batchSize = 0;
+            List<String> batchKeys = new ArrayList<>();
+            List<Long> batchLocations = new ArrayList<>();
+            while (true) {
+                try {
+                    int checksum = input.readInt();
+                    int keyLength = input.readInt();
+                    if (keyLength < 0 || keyLength > fileLength - read) {
+                        break;
+                    }
+                    ByteBuffer body = ByteBuffer.allocate(12 + keyLength);
+                    body.putInt(keyLength);
+                    input.readFully(body.array(), 4, keyLength + 8);
+                    crc.reset();
+                    crc.update(body.array(), 0, body.capacity());
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                    String key = new String(body.array(), 4, keyLength, StandardCharsets.UTF_8);
+                    body.position(4 + keyLength);
+                    int offset = body.getInt();
+                    int length = body.getInt();
+                    read += 4 + body.capacity();
+                    if (length == BATCH) {
+                        if (batchSize > 0) {
+                            break;
+                        }
+                        batchSize = offset;
+                        if (batchSize == 0) {
+                            directoryRecords++;
+                            valid = read;
+                        }
+                    } else if (batchSize > 0) {
+                        // 批次中的记录等到整批读完再生效
+                        batchKeys.add(key);
+                        batchLocations.add(((long) offset << 32) | (length & 0xFFFFFFFFL));
+                        if (batchKeys.size() == batchSize) {
+                            for (int i = 0; i < batchSize; i++) {
+                                long location = batchLocations.get(i);
+                                replay(batchKeys.get(i), (int) (location >>> 32), (int) location);
+                            }
+                            directoryRecords += 1 + batchSize;
+                            batchKeys.clear();
+                            batchLocations.clear();
+                            batchSize = 0;
+                            valid = read;
+                        }
+                    } else {
+                        replay(key, offset, length);
+                        directoryRecords++;
+                        valid = read;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        }
+        if (valid < directoryFile.length()) {
+            // 上次写入中断留下的不完整记录
+            try (RandomAccessFile raf = new RandomAccessFile(directoryFile, "rw")) {
+                raf.setLength(valid);
+            }
+        }
+
+        File file = dataFile(generation);
+        dataFile = new RandomAccessFile(file, "rw");
+        if (dataFile.length() < end) {
+            dataFile.close();
+            throw new IOException("Data file is shorter than its directory: " + file);
+        }
+        data = dataFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                Math.max(dataFile.length(), INITIAL_CAPACITY));
+        directoryOutput = openDirectoryOutput();
+        deleteStaleDataFiles();
+    }
+
+    /**
+     * 打开时将一条目录记录应用到内存目录。
+     */
+    private void replay(String key, int offset, int length) {
+        Long previous = length == TOMBSTONE ? directory.remove(key) : directory.put(key, ((long) offset << 32) | length);
+        if (previous != null) {
+            liveSize -= size(previous);
+        }
+        if (length != TOMBSTONE) {
+            liveSize += VALUE_HEADER_SIZE + length;
+            end = Math.max(end, offset + VALUE_HEADER_SIZE + length);
+        }
+    }
+
+    private DataOutputStream openDirectoryOutput() throws IOException {
+        directoryFileOutput = new FileOutputStream(directoryFile, true);
+        return new DataOutputStream(new BufferedOutputStream(directoryFileOutput));
+    }
+
+    private File dataFile(int generation) {
+        return new File(basePath + "." + generation);
+    }
+
+    /**
+     * 删除整理中途崩溃留下的相邻代数据文件：提交前崩溃留下的下一代，或提交后未删除成功的上一代。
+     * 只删除本存储创建的代数，不触碰同目录下其它名称相似的文件。
+     */
+    private void deleteStaleDataFiles() {
+        if (generation > 0) {
+            deleteDataFile(dataFile(generation - 1));
+        }
+        deleteDataFile(dataFile(generation + 1));
+    }
+
+    private static void deleteDataFile(File file) {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
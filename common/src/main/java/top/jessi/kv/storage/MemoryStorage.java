@@ -0,0 +1,715 @@
+package top.jessi.kv.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 只保存在内存中的存储实现，适合会话期间的临时数据（如分页状态、临时令牌），进程退出后数据即丢失。
+ *
+ * <p>键和值都保存在堆外的直接内存中，堆上只有一个开放寻址的索引（每个键一个 long 地址和一个 int 哈希值），
+ * 大量数据不会增加 GC 的扫描和复制负担。</p>
+ *
+ * <p>内存按固定大小的 slab 申请，slab 内按伙伴算法分成 2 的幂大小的块，每个键值对占用一块：</p>
+ * <pre>
+ * int 键长度 | int 值长度 | byte 值类型 | 键（UTF-8） | 值（UTF-8 文本或原始字节）
+ * </pre>
+ * <p>释放的块与空闲的伙伴块逐级合并，整个 slab 都空闲时归还，不同大小的记录因此可以复用同一片内存；
+ * 超过 slab 大小的记录单独申请，删除后立即归还。申请的总内存不会超过 maxBytes，超出时写入失败并返回 false。
+ * 读取共享读锁，可以并发进行；写入持有写锁。</p>
+ */
+public class MemoryStorage implements Storage {
+
+    /** 默认的内存上限 */
+    private static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+    private static final int DEFAULT_SLAB_SIZE = 1024 * 1024;
+    /** 最小块为 32 字节 */
+    private static final int MIN_BLOCK_SHIFT = 5;
+    /** 记录头：键长度 + 值长度 + 值类型 */
+    private static final int RECORD_HEADER_SIZE = 9;
+    private static final byte TYPE_TEXT = 0;
+    private static final byte TYPE_BYTES = 1;
+    /** 索引槽位的状态，其余值为块地址加一 */
+    private static final long EMPTY = 0;
+    private static final long DELETED = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final long maxBytes;
+    private final int slabSize;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** slab 的阶，即 log2(slabSize) */
+    private final int maxOrder;
+    /** 下标即地址中的 slab 编号，归还后置为 null */
+    private final List<Slab> slabs = new ArrayList<>();
+    /** 已归还的 slab 编号，供下次复用 */
+    private final List<Integer> freeSlabs = new ArrayList<>();
+    /** 各阶空闲块链表的表头地址加一，0 表示链表为空，下标为阶 - MIN_BLOCK_SHIFT */
+    private final long[] freeHeads;
+
+    private long[] slots = new long[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size;
+    private int deletedSlots;
+    /** 已向系统申请的直接内存 */
+    private long reservedBytes;
+    /** 已分配给记录的块大小之和 */
+    private long usedBytes;
+
+    public MemoryStorage() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes 最多申请的直接内存字节数
+     */
+    public MemoryStorage(long maxBytes) {
+        if (maxBytes < 1 << MIN_BLOCK_SHIFT) {
+            throw new IllegalArgumentException("Max bytes should be at least " + (1 << MIN_BLOCK_SHIFT));
+        }
+        this.maxBytes = maxBytes;
+        this.slabSize = (int) Math.min(DEFAULT_SLAB_SIZE, Long.highestOneBit(maxBytes));
+        this.maxOrder = Integer.numberOfTrailingZeros(slabSize);
+        this.freeHeads = new long[maxOrder - MIN_BLOCK_SHIFT + 1];
+    }
+
+    @Override
+    public <T> boolean put(String key, T value) {
+        KvUtils.checkNull("key", key);
+        return writeBatch(Collections.singletonMap(key, value), Collections.<String>emptyList());
+    }
+
+    @Override
+    public <T> boolean putAll(Map<String, T> entries) {
+        return writeBatch(entries, Collections.<String>emptyList());
+    }
+
+    /**
+     * 先为全部写入分配内存，再替换索引并释放旧记录。内存不足时改为先释放本批覆盖和删除的旧记录再分配，
+     * 仍然不足则恢复旧记录并返回 false，不修改任何数据。
+     */
+    @Override
+    public <T> boolean writeBatch(Map<String, T> puts, Collection<String> deletes) {
+        List<byte[]> keys = new ArrayList<>(puts.size());
+        List<Object> values = new ArrayList<>(puts.size());
+        for (Map.Entry<String, T> entry : puts.entrySet()) {
+            KvUtils.checkNull("key", entry.getKey());
+            keys.add(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            values.add(entry.getValue());
+        }
+        lock.writeLock().lock();
+        try {
+            long[] addresses = writeAll(keys, values);
+            if (addresses == null) {
+                return writeReleasingOld(keys, values, puts, deletes);
+            }
+            for (String key : deletes) {
+                remove(key.getBytes(StandardCharsets.UTF_8));
+            }
+            for (int i = 0; i < addresses.length; i++) {
+                insert(keys.get(i), addresses[i]);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T get(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            int slot = find(keyBytes, hash(keyBytes));
+            return slot < 0 ? null : (T) readValue(slots[slot] - 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> Map<String, T> getAll() {
+        lock.readLock().lock();
+        try {
+            Map<String, T> map = new HashMap<>(size * 4 / 3 + 1);
+            for (long slot : slots) {
+                if (slot > 0) {
+                    map.put(readKey(slot - 1), (T) readValue(slot - 1));
+                }
+            }
+            return map;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public <T> KvIterator<T> scan(int batchSize) {
+        String[] keys;
+        lock.readLock().lock();
+        try {
+            keys = new String[size];
+            int index = 0;
+            for (long slot : slots) {
+                if (slot > 0) {
+                    keys[index++] = readKey(slot - 1);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // 只复制键名，值在遍历时按批读取
+        return KvIterator.ofKeys(keys, this, batchSize);
+    }
+
+    @Override
+    public boolean delete(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        lock.writeLock().lock();
+        try {
+            remove(keyBytes);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean deleteAll(Collection<String> keys) {
+        return writeBatch(Collections.emptyMap(), keys);
+    }
+
+    /**
+     * 丢弃全部 slab，直接内存在其 ByteBuffer 被回收时释放。
+     */
+    @Override
+    public boolean deleteAll() {
+        lock.writeLock().lock();
+        try {
+            slabs.clear();
+            freeSlabs.clear();
+            Arrays.fill(freeHeads, 0);
+            slots = new long[INITIAL_CAPACITY];
+            hashes = new int[INITIAL_CAPACITY];
+            size = 0;
+            deletedSlots = 0;
+            reservedBytes = 0;
+            usedBytes = 0;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            return find(keyBytes, hash(keyBytes)) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * byte[] 值原样保存，读取时按写入的类型返回 String 或 byte[]。
+     */
+    @Override
+    public boolean supportsBytes() {
+        return true;
+    }
+
+    /**
+     * 获取内存上限。
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 获取已申请的直接内存字节数，包括 slab 中空闲的块，不超过 {@link #getMaxBytes()}。
+     */
+    public long getReservedBytes() {
+        lock.readLock().lock();
+        try {
+            return reservedBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取已分配给现有记录的字节数，按块大小计算，包含块内未用满的部分。
+     */
+    public long getUsedBytes() {
+        lock.readLock().lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 为全部写入分配内存并写入记录。
+     *
+     * @return 各记录的块地址，任一分配失败时释放已分配的块并返回 null
+     */
+    private long[] writeAll(List<byte[]> keys, List<Object> values) {
+        long[] addresses = new long[keys.size()];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = write(keys.get(i), values.get(i));
+            if (addresses[i] < 0) {
+                for (int j = 0; j < i; j++) {
+                    free(addresses[j]);
+                }
+                return null;
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * 内存不足时的写入路径：先释放本批会被覆盖或删除的旧记录，再为新记录分配内存。
+     * 分配仍然失败时释放新块，把旧记录按原地址原样恢复，索引不做任何修改。
+     */
+    private boolean writeReleasingOld(List<byte[]> keys, List<Object> values, Map<String, ?> puts,
+                                      Collection<String> deletes) {
+        // 释放旧块会覆盖块头，必须在释放前查好槽位
+        int[] putSlots = new int[keys.size()];
+        List<Integer> oldSlots = new ArrayList<>();
+        for (int i = 0; i < putSlots.length; i++) {
+            putSlots[i] = find(keys.get(i), hash(keys.get(i)));
+            if (putSlots[i] >= 0) {
+                oldSlots.add(putSlots[i]);
+            }
+        }
+        int overwritten = oldSlots.size();
+        for (String key : deletes) {
+            if (puts.containsKey(key)) {
+                continue;
+            }
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            int slot = find(keyBytes, hash(keyBytes));
+            if (slot >= 0 && !oldSlots.contains(slot)) {
+                oldSlots.add(slot);
+            }
+        }
+
+        long[] oldAddresses = new long[oldSlots.size()];
+        byte[][] oldRecords = new byte[oldSlots.size()][];
+        for (int i = 0; i < oldAddresses.length; i++) {
+            oldAddresses[i] = slots[oldSlots.get(i)] - 1;
+            ByteBuffer view = view(oldAddresses[i]);
+            oldRecords[i] = new byte[RECORD_HEADER_SIZE + view.getInt() + view.getInt()];
+            view.position((int) oldAddresses[i]);
+            view.get(oldRecords[i]);
+        }
+        for (long address : oldAddresses) {
+            free(address);
+        }
+
+        long[] addresses = writeAll(keys, values);
+        if (addresses == null) {
+            for (int i = 0; i < oldAddresses.length; i++) {
+                reclaim(oldAddresses[i], oldRecords[i].length);
+                view(oldAddresses[i]).put(oldRecords[i]);
+            }
+            return false;
+        }
+
+        // 先让所有槽位指向有效记录，再插入新键，探测时不会读到已释放的块
+        for (int i = overwritten; i < oldSlots.size(); i++) {
+            slots[oldSlots.get(i)] = DELETED;
+            size--;
+            deletedSlots++;
+        }
+        for (int i = 0; i < putSlots.length; i++) {
+            if (putSlots[i] >= 0) {
+                slots[putSlots[i]] = addresses[i] + 1;
+            }
+        }
+        for (int i = 0; i < putSlots.length; i++) {
+            if (putSlots[i] < 0) {
+                insert(keys.get(i), addresses[i]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 分配一块内存并写入记录，调用方需持有写锁。
+     *
+     * @return 块地址，内存不足时返回 -1
+     */
+    private long write(byte[] key, Object value) {
+        byte type;
+        byte[] bytes;
+        if (value instanceof byte[]) {
+            type = TYPE_BYTES;
+            bytes = (byte[]) value;
+        } else {
+            type = TYPE_TEXT;
+            bytes = String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+        }
+        long length = (long) RECORD_HEADER_SIZE + key.length + bytes.length;
+        if (length > Integer.MAX_VALUE) {
+            return -1;
+        }
+        long address = allocate((int) length);
+        if (address < 0) {
+            return -1;
+        }
+        ByteBuffer view = view(address);
+        view.putInt(key.length).putInt(bytes.length).put(type).put(key).put(bytes);
+        return address;
+    }
+
+    /**
+     * 从最小的足够大的空闲块中分配，块过大时逐级对半拆分，多出的一半放回空闲链表。
+     */
+    private long allocate(int length) {
+        if (length > slabSize) {
+            // 大记录单独申请
+            if (reservedBytes + length > maxBytes) {
+                return -1;
+            }
+            int slab = nextSlab();
+            setSlab(slab, new Slab(ByteBuffer.allocateDirect(length), null));
+            reservedBytes += length;
+            usedBytes += length;
+            return address(slab, 0);
+        }
+
+        int order = order(length);
+        int current = order;
+        while (current <= maxOrder && freeHeads[current - MIN_BLOCK_SHIFT] == 0) {
+            current++;
+        }
+        if (current > maxOrder) {
+            if (reservedBytes + slabSize > maxBytes) {
+                return -1;
+            }
+            newSlab(nextSlab());
+            current = maxOrder;
+        }
+        long address = freeHeads[current - MIN_BLOCK_SHIFT] - 1;
+        unlink(address, current);
+        while (current > order) {
+            current--;
+            push(address + (1 << current), current);
+        }
+        usedBytes += 1 << order;
+        return address;
+    }
+
+    /**
+     * 释放记录占用的块，与空闲的伙伴块逐级合并，合并成整个 slab 时将 slab 归还。
+     */
+    private void free(long address) {
+        ByteBuffer view = view(address);
+        int length = RECORD_HEADER_SIZE + view.getInt() + view.getInt();
+        int slab = (int) (address >>> 32);
+        if (length > slabSize) {
+            releaseSlab(slab, length);
+            usedBytes -= length;
+            return;
+        }
+        int order = order(length);
+        usedBytes -= 1 << order;
+        int offset = (int) address;
+        BitSet[] free = slabs.get(slab).free;
+        while (order < maxOrder) {
+            int buddy = offset ^ (1 << order);
+            if (!free[order - MIN_BLOCK_SHIFT].get(buddy >>> order)) {
+                break;
+            }
+            unlink(address(slab, buddy), order);
+            offset &= ~(1 << order);
+            order++;
+        }
+        if (order == maxOrder) {
+            releaseSlab(slab, slabSize);
+        } else {
+            push(address(slab, offset), order);
+        }
+    }
+
+    /**
+     * 重新占用刚释放的块，块所在的空闲块会被逐级拆分到原来的大小；slab 已归还时按原编号重新申请。
+     * 只用于恢复本批释放的旧记录，此时这些块必然空闲，内存也必然足够。
+     */
+    private void reclaim(long address, int length) {
+        int slab = (int) (address >>> 32);
+        if (length > slabSize) {
+            setSlab(slab, new Slab(ByteBuffer.allocateDirect(length), null));
+            reservedBytes += length;
+            usedBytes += length;
+            return;
+        }
+        if (slabs.get(slab) == null) {
+            newSlab(slab);
+        }
+        int order = order(length);
+        int offset = (int) address;
+        BitSet[] free = slabs.get(slab).free;
+        int current = order;
+        while (!free[current - MIN_BLOCK_SHIFT].get(offset >>> current)) {
+            current++;
+        }
+        int start = offset & -(1 << current);
+        unlink(address(slab, start), current);
+        while (current > order) {
+            current--;
+            int half = start + (1 << current);
+            if (offset >= half) {
+                push(address(slab, start), current);
+                start = half;
+            } else {
+                push(address(slab, half), current);
+            }
+        }
+        usedBytes += 1 << order;
+    }
+
+    /**
+     * 在指定编号处申请一个新 slab，整个 slab 作为一个最高阶的空闲块。
+     */
+    private void newSlab(int slab) {
+        BitSet[] free = new BitSet[maxOrder - MIN_BLOCK_SHIFT + 1];
+        for (int i = 0; i < free.length; i++) {
+            free[i] = new BitSet(slabSize >>> (i + MIN_BLOCK_SHIFT));
+        }
+        setSlab(slab, new Slab(ByteBuffer.allocateDirect(slabSize), free));
+        reservedBytes += slabSize;
+        push(address(slab, 0), maxOrder);
+    }
+
+    /**
+     * 下一个 slab 的编号，优先复用已归还的编号。
+     */
+    private int nextSlab() {
+        return freeSlabs.isEmpty() ? slabs.size() : freeSlabs.get(freeSlabs.size() - 1);
+    }
+
+    private void setSlab(int slab, Slab value) {
+        if (slab == slabs.size()) {
+            slabs.add(value);
+        } else {
+            freeSlabs.remove(Integer.valueOf(slab));
+            slabs.set(slab, value);
+        }
+    }
+
+    /**
+     * 归还整个 slab，直接内存在其 ByteBuffer 被回收时释放。
+     */
+    private void releaseSlab(int slab, int bytes) {
+        slabs.set(slab, null);
+        freeSlabs.add(slab);
+        reservedBytes -= bytes;
+    }
+
+    /**
+     * 将空闲块放到对应阶链表的表头。空闲块的前 16 字节保存前后节点的地址加一，0 表示没有。
+     */
+    private void push(long address, int order) {
+        long head = freeHeads[order - MIN_BLOCK_SHIFT];
+        setLink(address, 0, 0);
+        setLink(address, 8, head);
+        if (head != 0) {
+            setLink(head - 1, 0, address + 1);
+        }
+        freeHeads[order - MIN_BLOCK_SHIFT] = address + 1;
+        slabs.get((int) (address >>> 32)).free[order - MIN_BLOCK_SHIFT].set((int) address >>> order);
+    }
+
+    /**
+     * 将空闲块从对应阶的链表中摘除。
+     */
+    private void unlink(long address, int order) {
+        Slab slab = slabs.get((int) (address >>> 32));
+        long previous = slab.buffer.getLong((int) address);
+        long next = slab.buffer.getLong((int) address + 8);
+        if (previous == 0) {
+            freeHeads[order - MIN_BLOCK_SHIFT] = next;
+        } else {
+            setLink(previous - 1, 8, next);
+        }
+        if (next != 0) {
+            setLink(next - 1, 0, previous);
+        }
+        slab.free[order - MIN_BLOCK_SHIFT].clear((int) address >>> order);
+    }
+
+    private void setLink(long address, int field, long value) {
+        slabs.get((int) (address >>> 32)).buffer.putLong((int) address + field, value);
+    }
+
+    /**
+     * 写入或替换索引中的键，替换时释放旧记录的块。
+     */
+    private void insert(byte[] key, long address) {
+        int hash = hash(key);
+        int slot = find(key, hash);
+        if (slot >= 0) {
+            free(slots[slot] - 1);
+            slots[slot] = address + 1;
+            return;
+        }
+        if ((size + deletedSlots + 1) * 4L > slots.length * 3L) {
+            // 墓碑过多时只重建，不扩容
+            resize(size * 2 >= slots.length / 2 ? slots.length * 2 : slots.length);
+        }
+        int mask = slots.length - 1;
+        int index = hash & mask;
+        while (slots[index] > 0) {
+            index = (index + 1) & mask;
+        }
+        if (slots[index] == DELETED) {
+            deletedSlots--;
+        }
+        slots[index] = address + 1;
+        hashes[index] = hash;
+        size++;
+    }
+
+    private void remove(byte[] key) {
+        int slot = find(key, hash(key));
+        if (slot < 0) {
+            return;
+        }
+        free(slots[slot] - 1);
+        slots[slot] = DELETED;
+        size--;
+        deletedSlots++;
+    }
+
+    /**
+     * 线性探测查找键所在的槽位。
+     *
+     * @return 槽位下标，不存在时返回 -1
+     */
+    private int find(byte[] key, int hash) {
+        int mask = slots.length - 1;
+        int index = hash & mask;
+        while (slots[index] != EMPTY) {
+            if (slots[index] > 0 && hashes[index] == hash && keyEquals(slots[index] - 1, key)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void resize(int capacity) {
+        long[] oldSlots = slots;
+        int[] oldHashes = hashes;
+        slots = new long[capacity];
+        hashes = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] > 0) {
+                int index = oldHashes[i] & mask;
+                while (slots[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                slots[index] = oldSlots[i];
+                hashes[index] = oldHashes[i];
+            }
+        }
+        deletedSlots = 0;
+    }
+
+    private boolean keyEquals(long address, byte[] key) {
+        ByteBuffer view = view(address);
+        if (view.getInt() != key.length) {
+            return false;
+        }
+        int start = view.position() + 5;
+        for (int i = 0; i < key.length; i++) {
+            if (view.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readKey(long address) {
+        ByteBuffer view = view(address);
+        byte[] key = new byte[view.getInt()];
+        view.getInt();
+        view.get();
+        view.get(key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    private Object readValue(long address) {
+        ByteBuffer view = view(address);
+        int keyLength = view.getInt();
+        byte[] value = new byte[view.getInt()];
+        byte type = view.get();
+        view.position(view.position() + keyLength);
+        view.get(value);
+        return type == TYPE_BYTES ? value : new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 返回定位到块起始位置的独立视图，多个读线程互不影响。
+     */
+    private ByteBuffer view(long address) {
+        ByteBuffer view = slabs.get((int) (address >>> 32)).buffer.duplicate();
+        view.position((int) address);
+        return view;
+    }
+
+    private static long address(int slab, int offset) {
+        return ((long) slab << 32) | offset;
+    }
+
+    /**
+     * 记录所在块的阶，即 log2(块大小)，最小为 MIN_BLOCK_SHIFT。
+     */
+    private static int order(int length) {
+        return Math.max(MIN_BLOCK_SHIFT, 32 - Integer.numberOfLeadingZeros(length - 1));
+    }
+
+    private static int hash(byte[] key) {
+        int hash = 1;
+        for (byte b : key) {
+            hash = 31 * hash + b;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Slab {
+        final ByteBuffer buffer;
+        /** 各阶空闲块的位图，按块在 slab 内的序号标记，下标为阶 - MIN_BLOCK_SHIFT；单独申请的大记录为 null */
+        final BitSet[] free;
+
+        Slab(ByteBuffer buffer, BitSet[] free) {
+            this.buffer = buffer;
+            this.free = free;
+        }
+    }
+}
@@ -15,4 +15,14 @@ public class NoEncryption implements Encryption {
     public String decrypt(String key, String value) {
         return value;
     }
+
+    @Override
+    public byte[] encryptBytes(String key, byte[] value) {
+        return value;
+    }
+
+    @Override
+    public byte[] decryptBytes(String key, byte[] value) {
+        return value;
+    }
 }
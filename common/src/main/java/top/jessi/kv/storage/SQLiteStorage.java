@@ -5,16 +5,25 @@ import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
 import androidx.annotation.Nullable;
 
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * SQLite 数据库存储实现，将数据持久化到本地 SQLite 数据库中。
  *
- * <p>数据表包含三个字段：主键（自增）、键（唯一且非空）、值。</p>
+ * <p>数据表字段：主键（自增）、键（唯一且非空）、值（BLOB）、值类型、值大小、最后修改时间。
+ * String 值以 UTF-8 字节保存，byte[] 值原样保存。版本 1 的数据表只有文本值字段，
+ * 升级时只添加新字段，已有数据在后台分批转换，转换完成前的行依然可以正常读写。</p>
  *
  * Created by Jessi on 2023/8/18 11:57
  * Email：17324719944@189.cn
@@ -22,135 +31,266 @@ import java.util.Map;
 public class SQLiteStorage extends SQLiteOpenHelper implements Storage {
 
     private final SQLiteDatabase mSQLiteDatabase;
-    private static final int VERSION = 1;
+    private static final int VERSION = 2;
     private static final String DATABASE = "KVDB";
     private static final String TABLE = "kvdb_table";
     private static final String PRIMARY_KEY = "key_id";
     private static final String KEY = "kvdb_key";
+    /** 版本 1 的文本值字段，转换后置为 NULL */
     private static final String VALUE = "kvdb_value";
+    private static final String BLOB = "kvdb_blob";
+    private static final String TYPE = "kvdb_type";
+    private static final String SIZE = "kvdb_size";
+    private static final String MODIFIED = "kvdb_modified";
+    /** 读取值时查询的字段，顺序与 {@link #readValue(Cursor, int)} 一致 */
+    private static final String VALUE_COLUMNS = VALUE + " , " + BLOB + " , " + TYPE;
+    private static final int TYPE_TEXT = 0;
+    private static final int TYPE_BYTES = 1;
+    /** 后台转换旧数据时每批处理的行数 */
+    private static final int MIGRATION_BATCH_SIZE = 200;
+    /** 单条 SQL 中绑定参数的上限，低版本 SQLite 为 999 */
+    private static final int MAX_BIND_ARGS = 500;
+    private SQLiteStatement mUpsertStatement;
+    private SQLiteStatement mDeleteStatement;
 
     public SQLiteStorage(Context context) {
         super(context, DATABASE, null, VERSION);
+        // WAL 模式下读取不会被写入阻塞，多个线程可以同时读取
+        setWriteAheadLoggingEnabled(true);
         mSQLiteDatabase = this.getWritableDatabase();
+        startMigration();
     }
 
     public SQLiteStorage(@Nullable Context context, @Nullable String name,
                          @Nullable SQLiteDatabase.CursorFactory factory, int version) {
         super(context, name, factory, version);
+        // WAL 模式下读取不会被写入阻塞，多个线程可以同时读取
+        setWriteAheadLoggingEnabled(true);
         mSQLiteDatabase = this.getWritableDatabase();
+        startMigration();
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
         /*
-         * 创建一张数据表table 带有三个字段
+         * 创建一张数据表table
          * PRIMARY_KEY --> 主键 自增
          * KEY --> 存放数据key 唯一 不能为空
-         * VALUE --> 存放数据value
+         * VALUE --> 版本 1 的文本value，新数据不再使用
+         * BLOB、TYPE、SIZE、MODIFIED --> 存放数据value及其类型、字节数、最后修改时间
          * */
         db.execSQL("CREATE TABLE " + TABLE + " ( " + PRIMARY_KEY + " INTEGER PRIMARY KEY AUTOINCREMENT, " + KEY + " " +
-                "VARCHAR UNIQUE NOT NULL, " + VALUE + " VARCHAR)");
+                "VARCHAR UNIQUE NOT NULL, " + VALUE + " VARCHAR, " + BLOB + " BLOB, " + TYPE + " INTEGER, "
+                + SIZE + " INTEGER, " + MODIFIED + " INTEGER)");
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            upgradeToBlob(db);
+        }
+    }
 
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        // 使用自定义版本号的构造方法时不会触发 onUpgrade，在这里补齐字段
+        if (!hasColumn(db, BLOB)) {
+            upgradeToBlob(db);
+        }
     }
 
-    /*增*/
+    /*增改，INSERT OR REPLACE 一条语句完成*/
     @Override
     public <T> boolean put(String key, T value) {
-        try {
-            KvUtils.checkNull("key", key);
-            if (contains(key)) {
-                return update(key, value);
+        KvUtils.checkNull("key", key);
+        SQLiteStatement upsert = getUpsertStatement();
+        synchronized (upsert) {
+            try {
+                bindValue(upsert, key, value);
+                upsert.executeInsert();
+                return true;
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                upsert.clearBindings();
             }
-            // 开启事务
+        }
+        return false;
+    }
+
+    /*批量增改，整批在同一事务中提交*/
+    @Override
+    public <T> boolean putAll(Map<String, T> entries) {
+        SQLiteStatement upsert = getUpsertStatement();
+        synchronized (upsert) {
             mSQLiteDatabase.beginTransaction();
-            // 往数据表插入数据
+            try {
+                for (Map.Entry<String, T> entry : entries.entrySet()) {
+                    KvUtils.checkNull("key", entry.getKey());
+                    bindValue(upsert, entry.getKey(), entry.getValue());
+                    upsert.executeInsert();
+                }
+                mSQLiteDatabase.setTransactionSuccessful();
+                return true;
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                upsert.clearBindings();
+                mSQLiteDatabase.endTransaction();
+            }
+        }
+        return false;
+    }
 
-            // 1.直接使用sql语句
-            // mSQLiteDatabase.execSQL("INSERT INTO " + TABLE + " ( " + KEY + " , " + VALUE + " ) VALUES ( '" + key +
-            // "' , '" + value + "' )");
-            // 2.使用execSQL方法中带有占位符的方法，不会导致当插入的值中带有特殊字符 如” ' “ 导致的数据库插入异常
-            mSQLiteDatabase.execSQL("INSERT INTO " + TABLE + " ( " + KEY + " , " + VALUE + " ) VALUES (?,?)",
-                    new Object[]{key, value});
+    @Override
+    public <T> boolean writeBatch(Map<String, T> puts, Collection<String> deletes) {
+        SQLiteStatement upsert = getUpsertStatement();
+        SQLiteStatement delete = getDeleteStatement();
+        synchronized (upsert) {
+            synchronized (delete) {
+                mSQLiteDatabase.beginTransaction();
+                try {
+                    for (String key : deletes) {
+                        delete.bindString(1, key);
+                        delete.executeUpdateDelete();
+                    }
+                    for (Map.Entry<String, T> entry : puts.entrySet()) {
+                        KvUtils.checkNull("key", entry.getKey());
+                        bindValue(upsert, entry.getKey(), entry.getValue());
+                        upsert.executeInsert();
+                    }
+                    mSQLiteDatabase.setTransactionSuccessful();
+                    return true;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    upsert.clearBindings();
+                    delete.clearBindings();
+                    mSQLiteDatabase.endTransaction();
+                }
+            }
+        }
+        return false;
+    }
 
-            // 事务执行成功
-            mSQLiteDatabase.setTransactionSuccessful();
-            // 结束事务
-            mSQLiteDatabase.endTransaction();
-            return true;
+    /*查，读取不开启事务，WAL 模式下可与写入并发*/
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T get(String key) {
+        try (Cursor cursor = mSQLiteDatabase.rawQuery("SELECT " + VALUE_COLUMNS + " FROM " + TABLE + " WHERE " + KEY
+                + " = ? LIMIT 1", new String[]{key})) {
+            if (cursor != null && cursor.moveToFirst()) {
+                return (T) readValue(cursor, 0);
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
-        return false;
+        return null;
     }
 
-    /*查*/
     @SuppressWarnings("unchecked")
     @Override
-    public <T> T get(String key) {
-        T value = null;
-        try {
-            mSQLiteDatabase.beginTransaction();
-            // 查询key的第一条数据
-            // Cursor cursor = mSQLiteDatabase.rawQuery("SELECT * FROM " + TABLE + " WHERE " + KEY + " = '" + key +
-            // "'" + " LIMIT 1", null);
-            Cursor cursor = mSQLiteDatabase.rawQuery("SELECT * FROM " + TABLE + " WHERE " + KEY + " = ?" + " LIMIT 1",
-                    new String[]{key});
+    public <T> Map<String, T> getAll() {
+        Map<String, T> map = new HashMap<>();
+        try (Cursor cursor = mSQLiteDatabase.rawQuery("SELECT " + KEY + " , " + VALUE_COLUMNS + " FROM " + TABLE,
+                null)) {
             if (cursor != null) {
                 while (cursor.moveToNext()) {
-                    value = (T) cursor.getString(cursor.getColumnIndexOrThrow(VALUE));
+                    map.put(cursor.getString(0), (T) readValue(cursor, 1));
                 }
-                cursor.close();
             }
-            mSQLiteDatabase.setTransactionSuccessful();
-            mSQLiteDatabase.endTransaction();
         } catch (Exception e) {
             e.printStackTrace();
         }
-        return value;
+        return map;
     }
 
     @SuppressWarnings("unchecked")
     @Override
-    public <T> Map<String, T> getAll() {
+    public <T> Map<String, T> getAll(Collection<String> keys) {
         Map<String, T> map = new HashMap<>();
+        List<String> keyList = new ArrayList<>(keys);
         try {
-            mSQLiteDatabase.beginTransaction();
-            // 查询整个数据表的数据   DESC 降序  ASC 升序
-            Cursor cursor = mSQLiteDatabase.rawQuery("SELECT * FROM " + TABLE + " ORDER BY " + PRIMARY_KEY + " ASC",
-                    null);
-            if (cursor != null) {
-                while (cursor.moveToNext()) {
-                    map.put(cursor.getString(cursor.getColumnIndexOrThrow(KEY)),
-                            (T) cursor.getString(cursor.getColumnIndexOrThrow(VALUE)));
+            // 分段使用 IN 查询，避免超出绑定参数上限
+            for (int from = 0; from < keyList.size(); from += MAX_BIND_ARGS) {
+                List<String> part = keyList.subList(from, Math.min(from + MAX_BIND_ARGS, keyList.size()));
+                StringBuilder sql = new StringBuilder("SELECT " + KEY + " , " + VALUE_COLUMNS + " FROM " + TABLE
+                        + " WHERE " + KEY + " IN (");
+                for (int i = 0; i < part.size(); i++) {
+                    sql.append(i == 0 ? "?" : ",?");
+                }
+                sql.append(")");
+                try (Cursor cursor = mSQLiteDatabase.rawQuery(sql.toString(), part.toArray(new String[0]))) {
+                    if (cursor != null) {
+                        while (cursor.moveToNext()) {
+                            map.put(cursor.getString(0), (T) readValue(cursor, 1));
+                        }
+                    }
                 }
-                cursor.close();
             }
-            mSQLiteDatabase.setTransactionSuccessful();
-            mSQLiteDatabase.endTransaction();
         } catch (Exception e) {
             e.printStackTrace();
         }
         return map;
     }
 
-    /*删*/
+    /**
+     * 按键名分页遍历，每批一次查询，查询结束即关闭游标，不会长时间占用连接。
+     */
     @Override
-    public boolean delete(String key) {
-        try {
-            mSQLiteDatabase.beginTransaction();
-            // 根据key删除指定数据
-            // mSQLiteDatabase.execSQL("DELETE FROM " + TABLE + " WHERE " + KEY + " = '" + key + "'");
-            mSQLiteDatabase.execSQL("DELETE FROM " + TABLE + " WHERE " + KEY + " = ?", new Object[]{key});
-            mSQLiteDatabase.setTransactionSuccessful();
-            mSQLiteDatabase.endTransaction();
-            return true;
+    public <T> KvIterator<T> scan(int batchSize) {
+        return new ScanIterator<>(Math.max(1, batchSize));
+    }
+
+    /**
+     * byte[] 值原样保存在 BLOB 字段中，类型字段记录为字节。
+     */
+    @Override
+    public boolean supportsBytes() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsPrefixQuery() {
+        return true;
+    }
+
+    /**
+     * 使用键名唯一索引上的范围查询 {@code prefix <= key < upper}，只读取匹配的行。
+     */
+    @Override
+    public List<String> keys(String prefix) {
+        List<String> keys = new ArrayList<>();
+        String upper = prefixUpperBound(prefix);
+        String sql = "SELECT " + KEY + " FROM " + TABLE + " WHERE " + KEY + " >= ?"
+                + (upper == null ? "" : " AND " + KEY + " < ?") + " ORDER BY " + KEY;
+        String[] args = upper == null ? new String[]{prefix} : new String[]{prefix, upper};
+        try (Cursor cursor = mSQLiteDatabase.rawQuery(sql, args)) {
+            while (cursor != null && cursor.moveToNext()) {
+                keys.add(cursor.getString(0));
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
+        return keys;
+    }
+
+    /*删*/
+    @Override
+    public boolean delete(String key) {
+        SQLiteStatement delete = getDeleteStatement();
+        synchronized (delete) {
+            try {
+                delete.bindString(1, key);
+                delete.executeUpdateDelete();
+                return true;
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                delete.clearBindings();
+            }
+        }
         return false;
     }
 
@@ -169,6 +309,42 @@ public class SQLiteStorage extends SQLiteOpenHelper implements Storage {
         return false;
     }
 
+    /*批量删，整批在同一事务中提交*/
+    @Override
+    public boolean deleteAll(Collection<String> keys) {
+        SQLiteStatement delete = getDeleteStatement();
+        synchronized (delete) {
+            mSQLiteDatabase.beginTransaction();
+            try {
+                for (String key : keys) {
+                    delete.bindString(1, key);
+                    delete.executeUpdateDelete();
+                }
+                mSQLiteDatabase.setTransactionSuccessful();
+                return true;
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                delete.clearBindings();
+                mSQLiteDatabase.endTransaction();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * SYNC 使用 synchronous=FULL，每次提交都同步落盘；ASYNC 使用 synchronous=NORMAL，
+     * 在 WAL 模式下提交不再等待落盘，断电可能丢失最近的提交但不会损坏数据库。
+     */
+    @Override
+    public void setDurability(Durability durability) {
+        try {
+            mSQLiteDatabase.execSQL("PRAGMA synchronous = " + (durability == Durability.SYNC ? "FULL" : "NORMAL"));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     @Override
     public long count() {
         // 使用Android自带的方法统计数据库中有多少条数据
@@ -177,47 +353,261 @@ public class SQLiteStorage extends SQLiteOpenHelper implements Storage {
 
     @Override
     public boolean contains(String key) {
-        try {
-            mSQLiteDatabase.beginTransaction();
-            // 查询是否有一条key的数据
-            // Cursor cursor = mSQLiteDatabase.rawQuery("SELECT * FROM " + TABLE + " WHERE " + KEY + " = '" + key +
-            // "'" + " LIMIT 1", null);
-            Cursor cursor = mSQLiteDatabase.rawQuery("SELECT * FROM " + TABLE + " WHERE " + KEY + " = ?" + " LIMIT 1",
-                    new String[]{key});
-            if (cursor != null) {
-                // 如果游标能指向下一个 则代表有数据
-                if (cursor.moveToFirst()) {
-                    cursor.close();
+        try (Cursor cursor = mSQLiteDatabase.rawQuery("SELECT 1 FROM " + TABLE + " WHERE " + KEY + " = ? LIMIT 1",
+                new String[]{key})) {
+            // 如果游标能指向第一行 则代表有数据
+            return cursor != null && cursor.moveToFirst();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (mUpsertStatement != null) {
+            mUpsertStatement.close();
+            mUpsertStatement = null;
+        }
+        if (mDeleteStatement != null) {
+            mDeleteStatement.close();
+            mDeleteStatement = null;
+        }
+        super.close();
+    }
+
+    /**
+     * 预编译的写入语句，所有写入复用同一个实例，使用时需以该实例加锁。
+     * 键冲突时 REPLACE 会删除旧行再插入，主键随之变化，不影响按键读写。
+     */
+    private synchronized SQLiteStatement getUpsertStatement() {
+        if (mUpsertStatement == null) {
+            mUpsertStatement = mSQLiteDatabase.compileStatement("INSERT OR REPLACE INTO " + TABLE + " ( " + KEY
+                    + " , " + BLOB + " , " + TYPE + " , " + SIZE + " , " + MODIFIED + " ) VALUES (?,?,?,?,?)");
+        }
+        return mUpsertStatement;
+    }
+
+    private synchronized SQLiteStatement getDeleteStatement() {
+        if (mDeleteStatement == null) {
+            mDeleteStatement = mSQLiteDatabase.compileStatement("DELETE FROM " + TABLE + " WHERE " + KEY + " = ?");
+        }
+        return mDeleteStatement;
+    }
+
+    /**
+     * 计算以 prefix 开头的键名的上界：将最后一个码点加一。SQLite 按 UTF-8 字节比较文本，与按码点比较的顺序一致。
+     *
+     * @return 上界，prefix 为空或无法加一时返回 null，表示没有上界
+     */
+    private static String prefixUpperBound(String prefix) {
+        int end = prefix.length();
+        while (end > 0) {
+            int codePoint = prefix.codePointBefore(end);
+            int start = end - Character.charCount(codePoint);
+            if (codePoint < Character.MAX_CODE_POINT) {
+                int next = codePoint + 1;
+                if (next >= Character.MIN_SURROGATE && next <= Character.MAX_SURROGATE) {
+                    next = Character.MAX_SURROGATE + 1;
+                }
+                return prefix.substring(0, start) + new String(Character.toChars(next));
+            }
+            end = start;
+        }
+        return null;
+    }
+
+    /**
+     * 绑定写入语句的参数：键、值字节、值类型、字节数、修改时间。
+     */
+    private static void bindValue(SQLiteStatement statement, String key, Object value) {
+        byte[] bytes;
+        int type;
+        if (value instanceof byte[]) {
+            bytes = (byte[]) value;
+            type = TYPE_BYTES;
+        } else {
+            bytes = String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+            type = TYPE_TEXT;
+        }
+        statement.bindString(1, key);
+        statement.bindBlob(2, bytes);
+        statement.bindLong(3, type);
+        statement.bindLong(4, bytes.length);
+        statement.bindLong(5, System.currentTimeMillis());
+    }
+
+    /**
+     * 读取 {@link #VALUE_COLUMNS} 中的值，尚未转换的旧数据直接返回文本。
+     *
+     * @param first VALUE 字段在游标中的位置
+     */
+    private static Object readValue(Cursor cursor, int first) {
+        if (cursor.isNull(first + 1)) {
+            return cursor.getString(first);
+        }
+        byte[] bytes = cursor.getBlob(first + 1);
+        return cursor.getInt(first + 2) == TYPE_BYTES ? bytes : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 只添加新字段，不改写已有数据，耗时与数据量无关。已有数据由 {@link #startMigration()} 在后台转换。
+     */
+    private static void upgradeToBlob(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + BLOB + " BLOB");
+        db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + TYPE + " INTEGER");
+        db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + SIZE + " INTEGER");
+        db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + MODIFIED + " INTEGER");
+    }
+
+    private static boolean hasColumn(SQLiteDatabase db, String column) {
+        try (Cursor cursor = db.rawQuery("PRAGMA table_info(" + TABLE + ")", null)) {
+            while (cursor != null && cursor.moveToNext()) {
+                if (column.equals(cursor.getString(cursor.getColumnIndexOrThrow("name")))) {
                     return true;
                 }
-                cursor.close();
             }
-            mSQLiteDatabase.setTransactionSuccessful();
-            mSQLiteDatabase.endTransaction();
+        }
+        return false;
+    }
+
+    /**
+     * 存在未转换的旧数据时，在后台线程中分批转换，每批一个事务，批次之间让出数据库。
+     * 转换进度保存在数据本身中，中途退出下次启动会继续。
+     */
+    private void startMigration() {
+        if (!hasLegacyRows()) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                while (migrateBatch()) {
+                    Thread.yield();
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, "KV-SQLiteMigration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private boolean hasLegacyRows() {
+        try (Cursor cursor = mSQLiteDatabase.rawQuery("SELECT 1 FROM " + TABLE + " WHERE " + BLOB + " IS NULL AND "
+                + VALUE + " IS NOT NULL LIMIT 1", null)) {
+            return cursor != null && cursor.moveToFirst();
         } catch (Exception e) {
             e.printStackTrace();
         }
         return false;
     }
 
-    /*改*/
-    private <T> boolean update(String key, T value) {
+    /**
+     * 转换一批旧数据。按主键更新且要求 BLOB 仍为空，期间被重新写入的行会被跳过。
+     *
+     * @return 还有未转换的数据返回 true
+     */
+    private boolean migrateBatch() {
+        List<Long> ids = new ArrayList<>(MIGRATION_BATCH_SIZE);
+        List<String> values = new ArrayList<>(MIGRATION_BATCH_SIZE);
+        try (Cursor cursor = mSQLiteDatabase.rawQuery("SELECT " + PRIMARY_KEY + " , " + VALUE + " FROM " + TABLE
+                + " WHERE " + BLOB + " IS NULL AND " + VALUE + " IS NOT NULL LIMIT " + MIGRATION_BATCH_SIZE, null)) {
+            while (cursor != null && cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+                values.add(cursor.getString(1));
+            }
+        }
+        if (ids.isEmpty()) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        SQLiteStatement update = mSQLiteDatabase.compileStatement("UPDATE " + TABLE + " SET " + BLOB + " = ?, "
+                + TYPE + " = ?, " + SIZE + " = ?, " + MODIFIED + " = ?, " + VALUE + " = NULL WHERE " + PRIMARY_KEY
+                + " = ? AND " + BLOB + " IS NULL");
+        mSQLiteDatabase.beginTransactionNonExclusive();
         try {
-            if (contains(key)) {
-                KvUtils.checkNull("key", key);
-                mSQLiteDatabase.beginTransaction();
-                // mSQLiteDatabase.execSQL("UPDATE " + TABLE + " SET " + VALUE + " = '" + value + "' WHERE " + KEY +
-                // " = '" + key + "'");
-                mSQLiteDatabase.execSQL("UPDATE " + TABLE + " SET " + VALUE + " = ? WHERE " + KEY + " = ?",
-                        new Object[]{key, value});
-                mSQLiteDatabase.setTransactionSuccessful();
-                mSQLiteDatabase.endTransaction();
+            for (int i = 0; i < ids.size(); i++) {
+                byte[] bytes = values.get(i).getBytes(StandardCharsets.UTF_8);
+                update.bindBlob(1, bytes);
+                update.bindLong(2, TYPE_TEXT);
+                update.bindLong(3, bytes.length);
+                update.bindLong(4, now);
+                update.bindLong(5, ids.get(i));
+                update.executeUpdateDelete();
+            }
+            mSQLiteDatabase.setTransactionSuccessful();
+        } finally {
+            mSQLiteDatabase.endTransaction();
+            update.close();
+        }
+        return ids.size() == MIGRATION_BATCH_SIZE;
+    }
+
+    /**
+     * 以键名为游标的分页迭代器，下一批从上一批最后一个键之后开始，走键名的唯一索引。
+     *
+     * <p>键按升序返回，每个键最多返回一次。不能以主键分页：INSERT OR REPLACE 会删除旧行并为键分配新的主键，
+     * 遍历期间被更新的键会再次出现。遍历期间写入的键若排在游标之后会被返回，排在之前则不会；
+     * 遍历开始前已存在且未被删除的键都会返回。</p>
+     */
+    private final class ScanIterator<T> implements KvIterator<T> {
+
+        private final int batchSize;
+        private final List<Map.Entry<String, T>> batch = new ArrayList<>();
+        private int position;
+        /** 上一批最后一个键，尚未读取时为 null */
+        private String lastKey;
+        private boolean finished;
+
+        ScanIterator(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (position < batch.size()) {
                 return true;
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+            if (finished) {
+                return false;
+            }
+            fetch();
+            return position < batch.size();
+        }
+
+        @Override
+        public Map.Entry<String, T> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batch.get(position++);
+        }
+
+        @Override
+        public void close() {
+            finished = true;
+            batch.clear();
+            position = 0;
         }
-        return false;
 
+        @SuppressWarnings("unchecked")
+        private void fetch() {
+            batch.clear();
+            position = 0;
+            String sql = "SELECT " + KEY + " , " + VALUE_COLUMNS + " FROM " + TABLE
+                    + (lastKey == null ? "" : " WHERE " + KEY + " > ?") + " ORDER BY " + KEY + " LIMIT " + batchSize;
+            String[] args = lastKey == null ? null : new String[]{lastKey};
+            try (Cursor cursor = mSQLiteDatabase.rawQuery(sql, args)) {
+                while (cursor != null && cursor.moveToNext()) {
+                    lastKey = cursor.getString(0);
+                    batch.add(new AbstractMap.SimpleImmutableEntry<>(lastKey, (T) readValue(cursor, 1)));
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            if (batch.size() < batchSize) {
+                finished = true;
+            }
+        }
     }
 }
@@ -19,6 +19,25 @@ public interface Serializer {
      */
     <T> String serialize(String cipherText, T value);
 
+    /**
+     * 将密文、数据类型、加密方案编号与压缩格式编号一起序列化，用于按键选择加密方案或启用压缩的场景。
+     * 默认实现无法记录方案和压缩格式，只支持默认方案且未压缩的值，其余情况返回 null，写入失败。
+     * 只有 {@link KvSerializer} 能配合 {@link EncryptionPolicy} 使用，构建时会校验。
+     *
+     * @param cipherText       密文
+     * @param value            原始值
+     * @param encryptionScheme 加密方案编号
+     * @param codecId          压缩格式编号，0 表示未压缩
+     * @param <T>              值类型
+     * @return 序列化后的字符串，无法记录方案或压缩格式时返回 null
+     */
+    default <T> String serialize(String cipherText, T value, int encryptionScheme, int codecId) {
+        if (encryptionScheme != EncryptionPolicy.DEFAULT_SCHEME || codecId != 0) {
+            return null;
+        }
+        return serialize(cipherText, value);
+    }
+
     /**
      * 根据给定的 DataInfo 反序列化文本。
      *
@@ -26,4 +45,52 @@ public interface Serializer {
      * @return 包含数据类型和密文的信息对象
      */
     DataInfo deserialize(String plainText);
-}
\ No newline at end of file
+
+    /**
+     * 仅从序列化文本中取出密文，不解析数据类型，用于调用方已知目标类型的场景。
+     * 默认通过 {@link #deserialize(String)} 实现，实现类可重写以跳过类型解析。
+     *
+     * @param serializedText 序列化文本
+     * @return 密文
+     */
+    default String getCipherText(String serializedText) {
+        DataInfo dataInfo = deserialize(serializedText);
+        return dataInfo == null ? null : dataInfo.cipherText;
+    }
+
+    /**
+     * 仅从序列化文本中取出数据类型标记，不解析类名。
+     * 默认通过 {@link #deserialize(String)} 实现，实现类可重写以跳过类型解析。
+     *
+     * @param serializedText 序列化文本
+     * @return 数据类型标记，见 {@link DataInfo} 中的 TYPE_ 常量
+     */
+    default char getDataType(String serializedText) {
+        DataInfo dataInfo = deserialize(serializedText);
+        return dataInfo == null ? 0 : dataInfo.dataType;
+    }
+
+    /**
+     * 仅从序列化文本中取出加密方案编号。
+     * 默认通过 {@link #deserialize(String)} 实现，实现类可重写以跳过类型解析。
+     *
+     * @param serializedText 序列化文本
+     * @return 加密方案编号，未记录时为 {@link EncryptionPolicy#DEFAULT_SCHEME}
+     */
+    default int getEncryptionScheme(String serializedText) {
+        DataInfo dataInfo = deserialize(serializedText);
+        return dataInfo == null ? EncryptionPolicy.DEFAULT_SCHEME : dataInfo.encryptionScheme;
+    }
+
+    /**
+     * 仅从序列化文本中取出压缩格式编号。
+     * 默认通过 {@link #deserialize(String)} 实现，实现类可重写以跳过类型解析。
+     *
+     * @param serializedText 序列化文本
+     * @return 压缩格式编号，未压缩时为 0
+     */
+    default int getCodecId(String serializedText) {
+        DataInfo dataInfo = deserialize(serializedText);
+        return dataInfo == null ? 0 : dataInfo.codecId;
+    }
+}
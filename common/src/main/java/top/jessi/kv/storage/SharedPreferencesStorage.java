@@ -5,6 +5,7 @@ import android.content.SharedPreferences;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -15,6 +16,8 @@ import java.util.Map;
 public final class SharedPreferencesStorage implements Storage {
 
     private final SharedPreferences preferences;
+    /** 为 true 时使用 commit 同步写入，默认使用 apply */
+    private volatile boolean syncCommit;
 
     public SharedPreferencesStorage(Context context) {
         /**
@@ -32,7 +35,33 @@ public final class SharedPreferencesStorage implements Storage {
     @Override
     public <T> boolean put(String key, T value) {
         KvUtils.checkNull("key", key);
-        return SPCompat.apply(getEditor().putString(key, String.valueOf(value)));
+        return commit(getEditor().putString(key, String.valueOf(value)));
+    }
+
+    @Override
+    public <T> boolean putAll(Map<String, T> entries) {
+        SharedPreferences.Editor editor = getEditor();
+        for (Map.Entry<String, T> entry : entries.entrySet()) {
+            KvUtils.checkNull("key", entry.getKey());
+            editor.putString(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        return commit(editor);
+    }
+
+    /**
+     * 所有写入和删除放在同一个 Editor 中一次提交。
+     */
+    @Override
+    public <T> boolean writeBatch(Map<String, T> puts, Collection<String> deletes) {
+        SharedPreferences.Editor editor = getEditor();
+        for (String key : deletes) {
+            editor.remove(key);
+        }
+        for (Map.Entry<String, T> entry : puts.entrySet()) {
+            KvUtils.checkNull("key", entry.getKey());
+            editor.putString(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        return commit(editor);
     }
 
     @SuppressWarnings("unchecked")
@@ -43,7 +72,16 @@ public final class SharedPreferencesStorage implements Storage {
 
     @Override
     public boolean delete(String key) {
-        return SPCompat.apply(getEditor().remove(key));
+        return commit(getEditor().remove(key));
+    }
+
+    @Override
+    public boolean deleteAll(Collection<String> keys) {
+        SharedPreferences.Editor editor = getEditor();
+        for (String key : keys) {
+            editor.remove(key);
+        }
+        return commit(editor);
     }
 
     @Override
@@ -59,7 +97,7 @@ public final class SharedPreferencesStorage implements Storage {
 
     @Override
     public boolean deleteAll() {
-        return SPCompat.apply(getEditor().clear());
+        return commit(getEditor().clear());
     }
 
     @Override
@@ -67,10 +105,19 @@ public final class SharedPreferencesStorage implements Storage {
         return preferences.getAll().size();
     }
 
+    @Override
+    public void setDurability(Durability durability) {
+        syncCommit = durability == Durability.SYNC;
+    }
+
     private SharedPreferences.Editor getEditor() {
         return preferences.edit();
     }
 
+    private boolean commit(SharedPreferences.Editor editor) {
+        return syncCommit ? editor.commit() : SPCompat.apply(editor);
+    }
+
     /**
      * SharedPreferences.apply 方法的兼容类。
      * 旧版本 Android 不支持 apply 时，自动降级为 commit。
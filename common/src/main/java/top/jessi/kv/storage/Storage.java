@@ -1,5 +1,10 @@
 package top.jessi.kv.storage;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -11,6 +16,12 @@ import java.util.Map;
  */
 public interface Storage {
 
+    /** KV 以 byte[] 写入的值总以该字节开头，KV 写入的文本值不会以它开头 */
+    byte BINARY_PREFIX = 0;
+
+    /** {@link #scan()} 每批读取的默认条数 */
+    int DEFAULT_SCAN_BATCH_SIZE = 256;
+
     /**
      * 存入一条数据
      *
@@ -66,4 +77,139 @@ public interface Storage {
      * @return 存在返回 true，否则返回 false
      */
     boolean contains(String key);
+
+    /**
+     * 批量存入数据。默认逐条调用 {@link #put}，实现类可重写为一次事务或一次提交。
+     *
+     * @param entries 键值对
+     * @param <T>     值的类型
+     * @return 全部存入成功返回 true，否则返回 false
+     */
+    default <T> boolean putAll(Map<String, T> entries) {
+        boolean result = true;
+        for (Map.Entry<String, T> entry : entries.entrySet()) {
+            result &= put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * 批量获取数据。默认逐条调用 {@link #get}，不存在的键不会出现在结果中。
+     *
+     * @param keys 键名集合
+     * @param <T>  值的类型
+     * @return 以 Map 形式返回存在的条目
+     */
+    default <T> Map<String, T> getAll(Collection<String> keys) {
+        Map<String, T> map = new HashMap<>();
+        for (String key : keys) {
+            T value = get(key);
+            if (value != null) {
+                map.put(key, value);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * 批量删除数据。默认逐条调用 {@link #delete}，实现类可重写为一次事务或一次提交。
+     *
+     * @param keys 键名集合
+     * @return 全部删除成功返回 true，否则返回 false
+     */
+    default boolean deleteAll(Collection<String> keys) {
+        boolean result = true;
+        for (String key : keys) {
+            result &= delete(key);
+        }
+        return result;
+    }
+
+    /**
+     * 原子地提交一组写入和删除：要么全部生效，要么全部不生效，读取方不会看到只完成一部分的结果。
+     * 默认依次调用 {@link #putAll(Map)} 和 {@link #deleteAll(Collection)}，不保证原子性，
+     * 实现类应重写为一次事务或一次提交。
+     *
+     * @param puts    待写入的键值对
+     * @param deletes 待删除的键名，与 puts 中的键不重叠
+     * @param <T>     值的类型
+     * @return 提交成功返回 true，否则返回 false
+     */
+    default <T> boolean writeBatch(Map<String, T> puts, Collection<String> deletes) {
+        boolean result = puts.isEmpty() || putAll(puts);
+        if (result && !deletes.isEmpty()) {
+            result = deleteAll(deletes);
+        }
+        return result;
+    }
+
+    /**
+     * 存储能否原样保存 byte[] 值。返回 true 时 KV 以 byte[] 写入值（首字节为 {@link #BINARY_PREFIX}），
+     * 省去 Base64 和字符串转换；{@link #get(String)} 需要按写入时的类型返回 String 或 byte[]。
+     *
+     * @return 支持返回 true，默认 false
+     */
+    default boolean supportsBytes() {
+        return false;
+    }
+
+    /**
+     * 设置写入的持久化方式，由 {@link KvBuilder#setDurability(Durability)} 在构建时调用。
+     * 默认忽略。{@link Durability#GROUP_COMMIT} 由 KV 在存储之上统一实现，存储只会收到
+     * {@link Durability#ASYNC} 或 {@link Durability#SYNC}。
+     *
+     * @param durability 持久化方式
+     */
+    default void setDurability(Durability durability) {
+    }
+
+    /**
+     * 以默认批大小逐条遍历存储，见 {@link #scan(int)}。
+     */
+    default <T> KvIterator<T> scan() {
+        return scan(DEFAULT_SCAN_BATCH_SIZE);
+    }
+
+    /**
+     * 逐条遍历存储中的所有条目，内存中最多只保留一批数据。默认基于 {@link #getAll()}，
+     * 实现类可重写为按批读取。
+     *
+     * @param batchSize 每批读取的条数
+     * @param <T>       值的类型
+     * @return 迭代器，使用完毕后需要关闭
+     */
+    default <T> KvIterator<T> scan(int batchSize) {
+        return KvIterator.of(this.<T>getAll());
+    }
+
+    /**
+     * 存储本身是否支持高效的前缀查询。返回 false 时，{@link KV#keys(String)} 等前缀操作
+     * 使用 KV 维护的内存有序索引，不会调用 {@link #keys(String)}。
+     *
+     * @return 支持返回 true
+     */
+    default boolean supportsPrefixQuery() {
+        return false;
+    }
+
+    /**
+     * 按字典序返回以 prefix 开头的键名。默认遍历全部数据后过滤，支持前缀查询的实现类应重写此方法
+     * 并让 {@link #supportsPrefixQuery()} 返回 true。
+     *
+     * @param prefix 键名前缀，空字符串表示全部键名
+     * @return 匹配的键名
+     */
+    default List<String> keys(String prefix) {
+        List<String> keys = new ArrayList<>();
+        try (KvIterator<Object> iterator = scan()) {
+            while (iterator.hasNext()) {
+                String key = iterator.next().getKey();
+                if (key.startsWith(prefix)) {
+                    keys.add(key);
+                }
+            }
+        }
+        Collections.sort(keys);
+        return keys;
+    }
 }
@@ -0,0 +1,332 @@
+package top.jessi.kv.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 大数据的分块存储，每个键对应目录下的一个文件，数据按固定大小分块加密后依次写入。
+ *
+ * <p>文件格式：</p>
+ * <pre>
+ * int 魔数 | int 加密方案编号 | int 块数 | { int 密文长度 | 密文 }
+ * </pre>
+ * <p>每块加密的明文为 {@code int 块序号 | byte 是否最后一块 | 原始数据}，序号和结束标记与数据一起被加密认证，
+ * 读取时逐块校验，块被调换、重复或截断都会读取失败。空数据也会写入一个空的最后一块。
+ * 读写时内存中最多只保留两块数据。</p>
+ * <p>写入先落到临时文件，完成后再重命名，读取方不会看到写了一半的数据。</p>
+ */
+final class StreamStore {
+
+    /** "KVS2" */
+    private static final int MAGIC = 0x4B565332;
+    /** 每块原始数据的大小 */
+    static final int CHUNK_SIZE = 64 * 1024;
+    /** 块明文中序号和结束标记的长度 */
+    private static final int CHUNK_HEADER_SIZE = 5;
+    /** 块数在文件中的偏移 */
+    private static final int COUNT_OFFSET = 8;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final Encryption[] encryptionSchemes;
+    private final LogInterceptor logInterceptor;
+    /** 正在写入的临时文件，{@link #deleteAll()} 不会删除，guarded by itself */
+    private final Set<File> activeTemps = new HashSet<>();
+
+    StreamStore(File directory, Encryption[] encryptionSchemes, LogInterceptor logInterceptor) {
+        this.directory = directory;
+        this.encryptionSchemes = encryptionSchemes;
+        this.logInterceptor = logInterceptor;
+    }
+
+    /**
+     * 读取输入流并分块加密写入，不关闭输入流。
+     *
+     * @param scheme 加密方案编号
+     * @return 全部写入成功返回 true
+     */
+    boolean write(String key, InputStream input, int scheme) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            logInterceptor.onLog("StreamStore -> 目录创建失败: " + directory);
+            return false;
+        }
+        File temp = null;
+        try {
+            Encryption encryption = encryption(scheme);
+            synchronized (activeTemps) {
+                temp = File.createTempFile("stream", TEMP_SUFFIX, directory);
+                activeTemps.add(temp);
+            }
+            FileOutputStream fileOutput = new FileOutputStream(temp);
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput))) {
+                output.writeInt(MAGIC);
+                output.writeInt(scheme);
+                // 块数在写完后回填
+                output.writeInt(0);
+                // 预读下一块，以便确定当前块是否为最后一块
+                byte[] buffer = new byte[CHUNK_HEADER_SIZE + CHUNK_SIZE];
+                byte[] next = new byte[CHUNK_HEADER_SIZE + CHUNK_SIZE];
+                int count = readChunk(input, buffer, CHUNK_HEADER_SIZE);
+                int index = 0;
+                while (true) {
+                    int nextCount = count < CHUNK_SIZE ? 0 : readChunk(input, next, CHUNK_HEADER_SIZE);
+                    boolean last = nextCount == 0;
+                    ByteBuffer.wrap(buffer).putInt(index).put((byte) (last ? 1 : 0));
+                    byte[] plain = count == CHUNK_SIZE ? buffer : copyOf(buffer, CHUNK_HEADER_SIZE + count);
+                    byte[] cipher = encryption.encryptBytes(key, plain);
+                    output.writeInt(cipher.length);
+                    output.write(cipher);
+                    index++;
+                    if (last) {
+                        break;
+                    }
+                    byte[] swap = buffer;
+                    buffer = next;
+                    next = swap;
+                    count = nextCount;
+                }
+                output.flush();
+                fileOutput.getChannel().write((ByteBuffer) ByteBuffer.allocate(4).putInt(index).flip(),
+                        COUNT_OFFSET);
+                fileOutput.getFD().sync();
+            }
+            if (!temp.renameTo(file(key))) {
+                logInterceptor.onLog("StreamStore -> 重命名失败: " + temp);
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            logInterceptor.onLog("StreamStore -> 写入失败: " + e.getMessage());
+            return false;
+        } finally {
+            if (temp != null) {
+                synchronized (activeTemps) {
+                    activeTemps.remove(temp);
+                }
+                if (temp.exists() && !temp.delete()) {
+                    logInterceptor.onLog("StreamStore -> 临时文件删除失败: " + temp);
+                }
+            }
+        }
+    }
+
+    /**
+     * 打开键对应数据的输入流，数据在读取时逐块解密。
+     *
+     * @return 输入流，数据不存在时返回 null
+     */
+    InputStream open(String key) throws IOException {
+        File file = file(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Invalid stream file: " + file);
+            }
+            Encryption encryption = encryption(input.readInt());
+            return new ChunkInputStream(key, input, encryption, input.readInt());
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    boolean contains(String key) {
+        return file(key).isFile();
+    }
+
+    boolean delete(String key) {
+        File file = file(key);
+        return !file.exists() || file.delete();
+    }
+
+    /**
+     * 删除全部数据，正在写入的临时文件除外，这些写入完成后仍会生效。
+     */
+    boolean deleteAll() {
+        synchronized (activeTemps) {
+            File[] files = directory.listFiles();
+            if (files == null) {
+                return true;
+            }
+            boolean deleted = true;
+            for (File file : files) {
+                if (!activeTemps.contains(file)) {
+                    deleted &= file.delete();
+                }
+            }
+            return deleted;
+        }
+    }
+
+    private Encryption encryption(int scheme) {
+        Encryption result = scheme >= 0 && scheme < encryptionSchemes.length ? encryptionSchemes[scheme] : null;
+        if (result == null) {
+            throw new IllegalStateException("Unknown encryption scheme: " + scheme);
+        }
+        return result;
+    }
+
+    /**
+     * 键名可能包含文件名不允许的字符，因此以其 SHA-256 摘要作为文件名。
+     */
+    private File file(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return new File(directory, builder.toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    /**
+     * 从 offset 开始尽量读满缓冲区，只有到达流末尾时才返回不足一块的数据。
+     *
+     * @return 读取的字节数
+     */
+    private static int readChunk(InputStream input, byte[] buffer, int offset) throws IOException {
+        int total = 0;
+        while (offset + total < buffer.length) {
+            int count = input.read(buffer, offset + total, buffer.length - offset - total);
+            if (count < 0) {
+                break;
+            }
+            total += count;
+        }
+        return total;
+    }
+
+    private static byte[] copyOf(byte[] buffer, int length) {
+        byte[] result = new byte[length];
+        System.arraycopy(buffer, 0, result, 0, length);
+        return result;
+    }
+
+    /**
+     * 逐块解密的输入流，只在当前块读完后才读取并解密下一块，并校验块序号与结束标记。
+     */
+    private static final class ChunkInputStream extends InputStream {
+
+        private final String key;
+        private final DataInputStream input;
+        private final Encryption encryption;
+        private final int chunkCount;
+        private byte[] chunk = new byte[0];
+        private int position;
+        private int limit;
+        private int index;
+        private boolean finished;
+
+        ChunkInputStream(String key, DataInputStream input, Encryption encryption, int chunkCount) throws IOException {
+            if (chunkCount <= 0) {
+                throw new IOException("Invalid chunk count: " + chunkCount);
+            }
+            this.key = key;
+            this.input = input;
+            this.encryption = encryption;
+            this.chunkCount = chunkCount;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return chunk[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(length, limit - position);
+            System.arraycopy(chunk, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            finished = true;
+            input.close();
+        }
+
+        /**
+         * @return 还有可读数据返回 true
+         */
+        private boolean fill() throws IOException {
+            while (position >= limit) {
+                if (finished) {
+                    return false;
+                }
+                if (index == chunkCount) {
+                    // 最后一块已校验，文件之后不应还有数据
+                    if (input.read() != -1) {
+                        throw new IOException("Unexpected data after the last chunk");
+                    }
+                    finished = true;
+                    return false;
+                }
+                int length;
+                try {
+                    length = input.readInt();
+                } catch (EOFException e) {
+                    throw new IOException("Stream truncated at chunk " + index, e);
+                }
+                if (length < 0) {
+                    throw new IOException("Invalid chunk length: " + length);
+                }
+                byte[] cipher = new byte[length];
+                input.readFully(cipher);
+                try {
+                    chunk = encryption.decryptBytes(key, cipher);
+                } catch (Exception e) {
+                    throw new IOException("Chunk decrypt failed", e);
+                }
+                if (chunk == null || chunk.length < CHUNK_HEADER_SIZE) {
+                    throw new IOException("Chunk decrypt failed");
+                }
+                ByteBuffer header = ByteBuffer.wrap(chunk);
+                int chunkIndex = header.getInt();
+                boolean last = header.get() == 1;
+                if (chunkIndex != index || last != (index == chunkCount - 1)) {
+                    throw new IOException("Chunk out of order at " + index);
+                }
+                index++;
+                position = CHUNK_HEADER_SIZE;
+                limit = chunk.length;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package top.jessi.kv.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 类型编号表：将值头部中的完整类名替换为很小的编号，编号表本身与数据保存在同一个存储中。
+ *
+ * <p>编号只增不减，一旦写入就不会改变，已写入的数据因此始终可以被解析。
+ * 编号表以换行分隔的类名保存在保留键 {@link #STORAGE_KEY} 下，该键对 KV 的使用者不可见。</p>
+ */
+final class TypeTable {
+
+    /** 编号表在存储中的保留键，切勿修改，否则已有数据将无法读取 */
+    static final String STORAGE_KEY = "__kv_type_table__";
+    private static final char SEPARATOR = '\n';
+
+    private final Storage storage;
+    private final LogInterceptor logInterceptor;
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<Class<?>> classes = new ArrayList<>();
+    private boolean loaded;
+    /** 编号表是否已保存在存储中 */
+    private boolean stored;
+
+    TypeTable(Storage storage, LogInterceptor logInterceptor) {
+        this.storage = storage;
+        this.logInterceptor = logInterceptor;
+    }
+
+    static boolean isReserved(String key) {
+        return STORAGE_KEY.equals(key);
+    }
+
+    /**
+     * 校验键不是保留键，覆盖或删除编号表会使已有数据在重启后无法解析。
+     *
+     * @throws IllegalArgumentException 键为保留键时抛出
+     */
+    static void checkNotReserved(String key) {
+        if (isReserved(key)) {
+            throw new IllegalArgumentException(key + " is reserved by KV");
+        }
+    }
+
+    /**
+     * 获取类名对应的编号，不存在时分配新编号并持久化。
+     *
+     * @param className 完整类名
+     * @return 编号，持久化失败时返回 -1，调用方应退回到写入完整类名的格式
+     */
+    synchronized int intern(String className) {
+        load();
+        Integer id = ids.get(className);
+        if (id != null) {
+            return id;
+        }
+        names.add(className);
+        if (!persist()) {
+            names.remove(names.size() - 1);
+            return -1;
+        }
+        id = names.size() - 1;
+        ids.put(className, id);
+        classes.add(null);
+        return id;
+    }
+
+    /**
+     * 获取编号对应的类，结果会被缓存，同一编号只反射一次。
+     *
+     * @param id 编号
+     * @return 对应的类，编号不存在或类无法加载时返回 null
+     */
+    synchronized Class<?> resolve(int id) {
+        load();
+        if (id < 0 || id >= names.size()) {
+            logInterceptor.onLog("TypeTable -> 未知的类型编号: " + id);
+            return null;
+        }
+        Class<?> clazz = classes.get(id);
+        if (clazz == null) {
+            try {
+                clazz = Class.forName(names.get(id));
+                classes.set(id, clazz);
+            } catch (ClassNotFoundException e) {
+                logInterceptor.onLog("TypeTable -> " + e.getMessage());
+            }
+        }
+        return clazz;
+    }
+
+    /**
+     * 编号表是否占用了存储中的一条数据，用于从存储的条数中扣除，只在首次调用时读取存储。
+     */
+    synchronized boolean isStored() {
+        load();
+        return stored;
+    }
+
+    /**
+     * 清空存储并重新写入编号表，保证内存中已分配的编号在重启后依然有效。
+     * 两步都在编号表的锁内完成，期间并发写入分配的编号不会在清空后丢失。
+     *
+     * @return 存储是否清空成功
+     */
+    synchronized boolean clearStorage() {
+        boolean deleted = storage.deleteAll();
+        if (deleted) {
+            stored = false;
+        }
+        if (loaded && !names.isEmpty()) {
+            persist();
+        }
+        return deleted;
+    }
+
+    private boolean persist() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) {
+                builder.append(SEPARATOR);
+            }
+            builder.append(names.get(i));
+        }
+        boolean result = storage.put(STORAGE_KEY, builder.toString());
+        if (result) {
+            stored = true;
+        } else {
+            logInterceptor.onLog("TypeTable -> 编号表保存失败");
+        }
+        return result;
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        String text = storage.get(STORAGE_KEY);
+        stored = text != null;
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        int start = 0;
+        while (start <= text.length()) {
+            int end = text.indexOf(SEPARATOR, start);
+            if (end == -1) {
+                end = text.length();
+            }
+            String name = text.substring(start, end);
+            ids.put(name, names.size());
+            names.add(name);
+            classes.add(null);
+            start = end + 1;
+        }
+    }
+}
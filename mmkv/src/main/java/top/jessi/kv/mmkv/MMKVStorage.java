@@ -4,9 +4,13 @@ import android.content.Context;
 
 import com.tencent.mmkv.MMKV;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
+import top.jessi.kv.storage.Durability;
+import top.jessi.kv.storage.KvIterator;
 import top.jessi.kv.storage.KvUtils;
 import top.jessi.kv.storage.Storage;
 
@@ -19,6 +23,8 @@ import top.jessi.kv.storage.Storage;
 public class MMKVStorage implements Storage {
 
     private final MMKV mMMKV;
+    /** 为 true 时每次写入后调用 sync 同步落盘，默认由 MMKV 的内存映射异步落盘 */
+    private volatile boolean mSyncWrites;
 
     public MMKVStorage(Context context) {
         String STORAGE_TAG_DO_NOT_CHANGE = "KVMM";
@@ -31,16 +37,56 @@ public class MMKVStorage implements Storage {
         mMMKV = MMKV.defaultMMKV();
     }
 
+    /**
+     * 使用独立的映射文件，不同 mmapId 的存储互不影响，适合配合 {@code KV.open} 按命名空间拆分数据。
+     * MMKV 的根目录在进程内只会初始化一次，应对所有实例传入相同的 rootDir。
+     *
+     * @param rootDir 根目录，位于应用私有目录下
+     * @param mmapId  映射文件的 ID，只应包含字母、数字、下划线等字符
+     */
+    public MMKVStorage(Context context, String rootDir, String mmapId) {
+        KvUtils.checkNullOrEmpty("mmapId", mmapId);
+        MMKV.initialize(context, context.getFilesDir().getAbsolutePath() + "/" + rootDir);
+        mMMKV = MMKV.mmkvWithID(mmapId);
+    }
+
     @Override
     public <T> boolean put(String key, T value) {
         KvUtils.checkNull("key", key);
-        return mMMKV.encode(key, String.valueOf(value));
+        return sync(encode(key, value));
+    }
+
+    @Override
+    public <T> boolean putAll(Map<String, T> entries) {
+        // MMKV 每次 encode 直接写入内存映射，没有额外的提交开销
+        boolean result = true;
+        for (Map.Entry<String, T> entry : entries.entrySet()) {
+            KvUtils.checkNull("key", entry.getKey());
+            result &= encode(entry.getKey(), entry.getValue());
+        }
+        return sync(result);
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public <T> T get(String key) {
-        return (T) mMMKV.getString(key, null);
+        // 文本和字节在 MMKV 中的存储格式相同，统一按字节读取后再区分
+        byte[] bytes = mMMKV.decodeBytes(key);
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length > 0 && bytes[0] == BINARY_PREFIX) {
+            return (T) bytes;
+        }
+        return (T) new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * byte[] 值通过 {@code encode(String, byte[])} 原样写入，不做字符串转换。
+     */
+    @Override
+    public boolean supportsBytes() {
+        return true;
     }
 
     @Override
@@ -54,11 +100,28 @@ public class MMKVStorage implements Storage {
         return map;
     }
 
+    @Override
+    public <T> KvIterator<T> scan(int batchSize) {
+        // 只取键名，值在遍历时逐批读取
+        return KvIterator.ofKeys(mMMKV.allKeys(), this, batchSize);
+    }
+
     @Override
     public boolean delete(String key) {
         try {
             mMMKV.removeValueForKey(key);
-            return true;
+            return sync(true);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    @Override
+    public boolean deleteAll(Collection<String> keys) {
+        try {
+            mMMKV.removeValuesForKeys(keys.toArray(new String[0]));
+            return sync(true);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -69,7 +132,7 @@ public class MMKVStorage implements Storage {
     public boolean deleteAll() {
         try {
             mMMKV.clearAll();
-            return true;
+            return sync(true);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -85,4 +148,23 @@ public class MMKVStorage implements Storage {
     public boolean contains(String key) {
         return mMMKV.containsKey(key);
     }
+
+    @Override
+    public void setDurability(Durability durability) {
+        mSyncWrites = durability == Durability.SYNC;
+    }
+
+    private boolean sync(boolean result) {
+        if (mSyncWrites) {
+            mMMKV.sync();
+        }
+        return result;
+    }
+
+    private boolean encode(String key, Object value) {
+        if (value instanceof byte[]) {
+            return mMMKV.encode(key, (byte[]) value);
+        }
+        return mMMKV.encode(key, String.valueOf(value));
+    }
 }
@@ -17,7 +17,21 @@ import java.util.Set;
  * Email：17324719944@189.cn
  */
 public class Mmkv {
+    /** 类型索引的 mmapID，与数据分开保存 */
+    private static final String TYPE_INDEX_ID = "mmkv_type_index";
+    /* 类型索引中记录的类型，0 表示未记录（开启类型模式之前写入的数据） */
+    private static final int TYPE_STRING = 1;
+    private static final int TYPE_INT = 2;
+    private static final int TYPE_BOOLEAN = 3;
+    private static final int TYPE_FLOAT = 4;
+    private static final int TYPE_LONG = 5;
+    private static final int TYPE_DOUBLE = 6;
+    private static final int TYPE_STRING_SET = 7;
+    private static final int TYPE_PARCELABLE = 8;
+
     private final MMKV sMMKV;
+    /** 类型模式下记录每个键的值类型，未开启时为 null */
+    private final MMKV sTypeIndex;
 
     /*
     * 默认保存路径
@@ -25,19 +39,33 @@ public class Mmkv {
     public Mmkv(Context context) {
         MMKV.initialize(context,context.getFilesDir().getAbsolutePath() + "/mmkv");
         sMMKV = MMKV.defaultMMKV();
+        sTypeIndex = null;
     }
 
     /*
     * 保存在本地路径
     * */
     public Mmkv(Context context , String rootDir){
+        this(context, rootDir, false);
+    }
+
+    /**
+     * 类型模式：写入时在单独的类型索引中记录每个键的值类型，{@link #getAll()} 对每个键读取一次类型索引，
+     * 再按类型读取一次值，不再逐个尝试。开启前已写入的数据没有类型记录，读取时仍按原方式推断。
+     * 类型模式下应只通过本类写入数据，否则索引中的类型可能与实际不符。
+     *
+     * @param typed 是否开启类型模式
+     */
+    public Mmkv(Context context, String rootDir, boolean typed) {
         MMKV.initialize(context,context.getFilesDir().getAbsolutePath() + "/" + rootDir);
         sMMKV = MMKV.defaultMMKV();
+        sTypeIndex = typed ? MMKV.mmkvWithID(TYPE_INDEX_ID) : null;
     }
 
     public Mmkv(Context context , String rootDir, MMKV.LibLoader loader){
         MMKV.initialize(context,context.getFilesDir().getAbsolutePath() + "/" + rootDir, loader);
         sMMKV = MMKV.defaultMMKV();
+        sTypeIndex = null;
     }
 
     /*
@@ -45,34 +73,37 @@ public class Mmkv {
      * 然后根据类型调用不同的保存方法
      * */
     public boolean put(String key, Object objcet) {
+        clearType(key);
         if (objcet instanceof String s) {
-            return sMMKV.encode(key, s);
+            return recordType(key, TYPE_STRING, sMMKV.encode(key, s));
         }
         if (objcet instanceof Integer i) {
-            return sMMKV.encode(key, i);
+            return recordType(key, TYPE_INT, sMMKV.encode(key, i));
         }
         if (objcet instanceof Boolean bool) {
-            return sMMKV.encode(key, bool);
+            return recordType(key, TYPE_BOOLEAN, sMMKV.encode(key, bool));
         }
         if (objcet instanceof Float f) {
-            return sMMKV.encode(key, f);
+            return recordType(key, TYPE_FLOAT, sMMKV.encode(key, f));
         }
         if (objcet instanceof Long l) {
-            return sMMKV.encode(key, l);
+            return recordType(key, TYPE_LONG, sMMKV.encode(key, l));
         }
         if (objcet instanceof Double d) {
-            return sMMKV.encode(key, d);
+            return recordType(key, TYPE_DOUBLE, sMMKV.encode(key, d));
         } else {
-            return sMMKV.encode(key, objcet.toString());
+            return recordType(key, TYPE_STRING, sMMKV.encode(key, objcet.toString()));
         }
     }
 
     public void putSet(String key, Set<String> sets) {
-        sMMKV.encode(key, sets);
+        clearType(key);
+        recordType(key, TYPE_STRING_SET, sMMKV.encode(key, sets));
     }
 
     public void putParcelable(String key, Parcelable obj) {
-        sMMKV.encode(key, obj);
+        clearType(key);
+        recordType(key, TYPE_PARCELABLE, sMMKV.encode(key, obj));
     }
 
     /*
@@ -113,6 +144,9 @@ public class Mmkv {
      * */
     public void remove(String key) {
         sMMKV.removeValueForKey(key);
+        if (sTypeIndex != null) {
+            sTypeIndex.removeValueForKey(key);
+        }
     }
 
     /*
@@ -120,6 +154,9 @@ public class Mmkv {
      * */
     public void clearAll() {
         sMMKV.clearAll();
+        if (sTypeIndex != null) {
+            sTypeIndex.clearAll();
+        }
     }
 
     /*
@@ -143,25 +180,21 @@ public class Mmkv {
     * 返回所有的值
     * */
     public Object[] getAllValues(){
-        String[] keyArr = this.getAllKeys();
-        Object[] valueArr = new Object[keyArr.length];
-        for (int i = 0,len = keyArr.length; i < len; i++) {
-            Object obj = getObjectValue(keyArr[i]);
-            valueArr[i] = obj;
-        }
-        return valueArr;
+        return getValues(this.getAllKeys());
     }
 
     /*
      * 返回所有键值对
-     * 如果value里面有包含(0d < value <= 1.0569021313E-314)的小数(会取整变成0或1)
+     * 非类型模式下，如果value里面有包含(0d < value <= 1.0569021313E-314)的小数(会取整变成0或1)
      * 或者有Boolean类型的value不建议使用(true变成1，false变成0)
+     * 类型模式下按记录的类型读取，没有上述限制；Parcelable 无法在不知道类的情况下解码，返回其序列化后的字节
      * */
     public Map<String, ?> getAll(){
         Map<String,Object> map = new HashMap<>();
         try{
+            // 只查询一次键，值按同一组键读取
             String[] keyArr = this.getAllKeys();
-            Object[] valueArr = this.getAllValues();
+            Object[] valueArr = getValues(keyArr);
             for (int i = 0,len = keyArr.length; i < len; i++) {
                 map.put(keyArr[i], valueArr[i]);
             }
@@ -171,7 +204,61 @@ public class Mmkv {
         return map;
     }
 
+    private Object[] getValues(String[] keyArr) {
+        if (keyArr == null) {
+            return new Object[0];
+        }
+        Object[] valueArr = new Object[keyArr.length];
+        for (int i = 0,len = keyArr.length; i < len; i++) {
+            valueArr[i] = getObjectValue(keyArr[i]);
+        }
+        return valueArr;
+    }
+
+    /*
+     * 类型模式下，写入值之前先移除旧的类型记录，写入中途进程退出时该键没有类型记录，读取时按原方式推断，
+     * 不会按旧类型解码新值
+     * */
+    private void clearType(String key) {
+        if (sTypeIndex != null) {
+            sTypeIndex.removeValueForKey(key);
+        }
+    }
+
+    /*
+     * 类型模式下，在数据写入成功后记录类型
+     * */
+    private boolean recordType(String key, int type, boolean result) {
+        if (result && sTypeIndex != null) {
+            sTypeIndex.encode(key, type);
+        }
+        return result;
+    }
+
+    /*
+     * 按类型索引中记录的类型读取值，只调用一次 decode
+     * */
+    private Object getTypedValue(String key, int type) {
+        return switch (type) {
+            case TYPE_STRING -> sMMKV.decodeString(key);
+            case TYPE_INT -> sMMKV.decodeInt(key);
+            case TYPE_BOOLEAN -> sMMKV.decodeBool(key);
+            case TYPE_FLOAT -> sMMKV.decodeFloat(key);
+            case TYPE_LONG -> sMMKV.decodeLong(key);
+            case TYPE_DOUBLE -> sMMKV.decodeDouble(key);
+            case TYPE_STRING_SET -> sMMKV.decodeStringSet(key);
+            default -> sMMKV.decodeBytes(key);
+        };
+    }
+
     private Object getObjectValue(String key) {
+        if (sTypeIndex != null) {
+            int type = sTypeIndex.decodeInt(key, 0);
+            if (type != 0) {
+                return getTypedValue(key, type);
+            }
+        }
+
         /*因为其他基础类型value会读成空字符串,所以不是空字符串即为string or string-set类型*/
         String value = sMMKV.decodeString(key);
         if (!TextUtils.isEmpty(value)) {